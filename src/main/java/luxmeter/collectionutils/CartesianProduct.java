@@ -1,60 +1,215 @@
 package luxmeter.collectionutils;
 
+import java.math.BigInteger;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
-final class CartesianProduct implements Iterable<List<Object>> {
-    private final List<Collection> vectors;
-    private final int totalRowSize;
+/**
+ * Lazy cartesian product over a list of vectors. The last vector changes fastest, e.g.
+ * the product of (a, b) and (1, 2) is [a, 1], [a, 2], [b, 1], [b, 2].<br/>
+ * The rows are not materialized: iterating advances an index per vector like an odometer
+ * and random access computes these indices from precomputed strides.<br/>
+ * The number of rows may exceed {@link Integer#MAX_VALUE}. In this case {@link #size()} is capped
+ * as required by the {@link Collection} contract. Use {@link #longSize()} or {@link #bigSize()} instead
+ * and {@link #get(long)} for random access.<br/>
+ * Consumers which only read each row can avoid the allocation of a list per row
+ * with {@link #cursor()}, {@link #forEachRow(Consumer)} or {@link #forEachOrdinals(Consumer)}.
+ *
+ * @see CollectionUtils#product(Collection[])
+ */
+public final class CartesianProduct extends AbstractList<List<Object>> implements RandomAccess {
+    private final Object[][] vectors;
+    private final int[] radices;
+    // number of rows after which the value of a column changes, -1 if it exceeds a long
+    private final long[] strides;
+    private final BigInteger exactRowSize;
+    // -1 if the number of rows exceeds a long
+    private final long totalRowSize;
     private final int totalColumnSize;
 
-    @SuppressWarnings("unchecked")
     public CartesianProduct(Collection... vectors) {
-        // need to convert each vector to a list since they don't need to be one necessary
-        this.vectors = (List<Collection>)(List<?>) Arrays.asList(vectors).stream().map(ArrayList::new).collect(Collectors.toList());
-        totalRowSize = calcRowSize(this.vectors);
-        totalColumnSize = this.vectors.size();
+        this(Arrays.asList(vectors));
     }
 
-    @SuppressWarnings("unchecked")
     public CartesianProduct(List<? extends Collection> vectors) {
-        this.vectors = (List<Collection>)(List<?>)vectors.stream().map(ArrayList::new).collect(Collectors.toList());
-        totalRowSize = calcRowSize(this.vectors);
-        totalColumnSize = this.vectors.size();
+        // need to convert each vector to an array since they don't need to be a list necessarily
+        totalColumnSize = vectors.size();
+        this.vectors = new Object[totalColumnSize][];
+        radices = new int[totalColumnSize];
+        for (int i = 0; i < totalColumnSize; i++) {
+            this.vectors[i] = vectors.get(i).toArray();
+            radices[i] = this.vectors[i].length;
+        }
+        strides = new long[totalColumnSize];
+        BigInteger rowSize = totalColumnSize == 0 ? BigInteger.ZERO : BigInteger.ONE;
+        for (int i = totalColumnSize - 1; i >= 0; i--) {
+            strides[i] = rowSize.bitLength() < Long.SIZE ? rowSize.longValue() : -1;
+            rowSize = rowSize.multiply(BigInteger.valueOf(radices[i]));
+        }
+        exactRowSize = rowSize;
+        totalRowSize = rowSize.bitLength() < Long.SIZE ? rowSize.longValue() : -1;
     }
 
     @Override
     public Iterator<List<Object>> iterator() {
         return new Iterator<List<Object>>() {
-            private int row =0;
+            private final MixedRadixCounter counter = new MixedRadixCounter(radices);
+            // the counter wraps around after the last row, so no row count is needed
+            private boolean exhausted = exactRowSize.signum() == 0;
 
             @Override
             public boolean hasNext() {
-                return row < totalRowSize;
+                return !exhausted;
             }
 
             @Override
             public List<Object> next() {
-                return calcVectorAt(row++);
+                if (exhausted) {
+                    throw new NoSuchElementException();
+                }
+                List<Object> vector = vectorOf(counter.digits());
+                exhausted = counter.increment() < 0;
+                return vector;
             }
         };
     }
 
-    private List<Object> calcVectorAt(int rowIndex) {
-        // i_0 = i / calcRowSize(vectors.subList(rowIndex, vectors.size()) % vectors.get(0).size()
-        List<Object> currentCartesianProductVector = new ArrayList<>(vectors.size());
-        for(int columnIndex = 0; columnIndex< totalColumnSize; columnIndex++) {
-            List<Collection> subVectors = vectors.subList(columnIndex, totalColumnSize);
-            int currentTotalRowSize = calcRowSize(subVectors);
-            List<?> currentVector = (List<?>) vectors.get(columnIndex);
-            int currentVectorRowIndex = (rowIndex / (currentTotalRowSize / currentVector.size())) % currentVector.size();
-            Object obj = currentVector.get(currentVectorRowIndex);
-            currentCartesianProductVector.add(obj);
+    /**
+     * Computes the row at the given position in O(number of columns).
+     * @param rowIndex position of the row
+     * @return row at the given position
+     */
+    @Override
+    public List<Object> get(int rowIndex) {
+        return get((long) rowIndex);
+    }
+
+    /**
+     * As {@link #get(int)} but also for positions beyond {@link Integer#MAX_VALUE}.
+     * @param rowIndex position of the row
+     * @return row at the given position
+     */
+    public List<Object> get(long rowIndex) {
+        if (rowIndex < 0 || (totalRowSize >= 0 && rowIndex >= totalRowSize)) {
+            throw new IndexOutOfBoundsException(String.format("Index: %s, Size: %s", rowIndex, exactRowSize));
         }
-        return currentCartesianProductVector;
+        List<Object> vector = new ArrayList<>(totalColumnSize);
+        for (int columnIndex = 0; columnIndex < totalColumnSize; columnIndex++) {
+            vector.add(vectors[columnIndex][digitAt(rowIndex, columnIndex)]);
+        }
+        return vector;
+    }
+
+    /**
+     * @return number of rows or {@link Integer#MAX_VALUE} if there are more
+     */
+    @Override
+    public int size() {
+        return totalRowSize >= 0 && totalRowSize <= Integer.MAX_VALUE ? (int) totalRowSize : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return number of rows or an empty optional if the number exceeds a long
+     */
+    public OptionalLong longSize() {
+        return totalRowSize >= 0 ? OptionalLong.of(totalRowSize) : OptionalLong.empty();
+    }
+
+    /**
+     * @return exact number of rows
+     */
+    public BigInteger bigSize() {
+        return exactRowSize;
+    }
+
+    /**
+     * Splits by ranges of row indices, so that the rows are distributed evenly over parallel streams
+     * without materializing them.
+     * @return spliterator over all rows
+     * @throws IllegalArgumentException if the number of rows exceeds a long
+     */
+    @Override
+    public Spliterator<List<Object>> spliterator() {
+        long rowSize = longSize().orElseThrow(() -> new IllegalArgumentException(String.format(
+                "The product consists of %s rows, its row indices don't fit into a long.", exactRowSize)));
+        return new CartesianProductSpliterator(this, 0, rowSize);
+    }
+
+    /**
+     * @return index mapping the rows to their positions and back
+     * @throws IllegalArgumentException if the number of rows exceeds a long
+     */
+    public ProductIndex index() {
+        return new ProductIndex(this, vectors, strides);
+    }
+
+    /**
+     * @return iterator over all rows in an order in which consecutive rows differ in exactly one column
+     */
+    public GrayCodeIterator grayCodeIterator() {
+        return new GrayCodeIterator(this);
     }
 
-    private int calcRowSize(List<Collection> lists) {
-        return lists.stream().map(Collection::size).reduce((a, b) -> a * b).orElse(0);
+    /**
+     * @return cursor positioned before the first row
+     */
+    public ProductCursor cursor() {
+        return new ProductCursor(this);
+    }
+
+    /**
+     * Passes each row to the visitor as an array. The same array is reused for all rows,
+     * so the visitor must neither modify nor keep it.
+     * @param visitor consumer of the rows
+     */
+    public void forEachRow(Consumer<Object[]> visitor) {
+        ProductCursor cursor = cursor();
+        while (cursor.next()) {
+            visitor.accept(cursor.row());
+        }
+    }
+
+    /**
+     * Passes for each row the positions of its values within their vectors to the visitor.
+     * The same array is reused for all rows, so the visitor must neither modify nor keep it.
+     * @param visitor consumer of the positions
+     */
+    public void forEachOrdinals(Consumer<int[]> visitor) {
+        ProductCursor cursor = cursor();
+        while (cursor.next()) {
+            visitor.accept(cursor.ordinals());
+        }
+    }
+
+    void fillRow(int[] digits, int fromColumn, Object[] row) {
+        for (int columnIndex = fromColumn; columnIndex < totalColumnSize; columnIndex++) {
+            row[columnIndex] = vectors[columnIndex][digits[columnIndex]];
+        }
+    }
+
+    int[] radices() {
+        return radices;
+    }
+
+    int[] digitsAt(long rowIndex) {
+        int[] digits = new int[totalColumnSize];
+        for (int columnIndex = 0; columnIndex < totalColumnSize; columnIndex++) {
+            digits[columnIndex] = digitAt(rowIndex, columnIndex);
+        }
+        return digits;
+    }
+
+    private int digitAt(long rowIndex, int columnIndex) {
+        long stride = strides[columnIndex];
+        // a stride exceeding a long is greater than any row index
+        return stride < 0 ? 0 : (int) ((rowIndex / stride) % radices[columnIndex]);
+    }
+
+    List<Object> vectorOf(int[] digits) {
+        List<Object> vector = new ArrayList<>(totalColumnSize);
+        for (int columnIndex = 0; columnIndex < totalColumnSize; columnIndex++) {
+            vector.add(vectors[columnIndex][digits[columnIndex]]);
+        }
+        return vector;
     }
 }
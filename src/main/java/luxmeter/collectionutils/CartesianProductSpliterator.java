@@ -0,0 +1,71 @@
+package luxmeter.collectionutils;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over a range of row indices of a {@link CartesianProduct}.
+ * Splitting halves the range, traversing advances an odometer starting at the first row of the range.
+ */
+final class CartesianProductSpliterator implements Spliterator<List<Object>> {
+    private final CartesianProduct product;
+    private long origin;
+    private final long fence;
+    // created lazily at the first traversal, since splitting changes the origin
+    private MixedRadixCounter counter;
+
+    CartesianProductSpliterator(CartesianProduct product, long origin, long fence) {
+        this.product = product;
+        this.origin = origin;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super List<Object>> action) {
+        if (origin >= fence) {
+            return false;
+        }
+        advance(action);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super List<Object>> action) {
+        while (origin < fence) {
+            advance(action);
+        }
+    }
+
+    private void advance(Consumer<? super List<Object>> action) {
+        if (counter == null) {
+            counter = new MixedRadixCounter(product.radices(), product.digitsAt(origin));
+        }
+        action.accept(product.vectorOf(counter.digits()));
+        counter.increment();
+        origin++;
+    }
+
+    @Override
+    public Spliterator<List<Object>> trySplit() {
+        long half = (fence - origin) >>> 1;
+        if (half == 0) {
+            return null;
+        }
+        long mid = origin + half;
+        Spliterator<List<Object>> prefix = new CartesianProductSpliterator(product, origin, mid);
+        origin = mid;
+        counter = null;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | IMMUTABLE | NONNULL | SIZED | SUBSIZED;
+    }
+}
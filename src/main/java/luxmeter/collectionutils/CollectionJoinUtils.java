@@ -0,0 +1,155 @@
+package luxmeter.collectionutils;
+
+import luxmeter.collectionutils.CollectionSortUtils.ComposedKeyProvider;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Util class defining convenient join methods applicable for collections.
+ * The join keys are defined the same way as the sorting keys of {@link CollectionSortUtils},
+ * i.e. by a function mapping an element to an array of Comparables (see {@link CollectionSortUtils#tuple(Comparable[])}).
+ * Two elements match if their keys are equal part by part. Null parts are considered equal.<br/>
+ * All joins are computed lazily while iterating over the result.
+ */
+public final class CollectionJoinUtils {
+
+    private CollectionJoinUtils() {
+    }
+
+    /**
+     * Returns all pairs of left and right elements sharing the same key.<br/>
+     * Example:
+     * <pre>{@code
+     * Iterable<Pair<Rate, Product>> ratesWithProducts = innerJoin(rates, products,
+     *          rate -> tuple(rate.getProductCode()),
+     *          product -> tuple(product.getCode()));
+     * }</pre>
+     * The hash table is built on the smaller collection. The order of the pairs is not specified.
+     *
+     * @param left left side of the join
+     * @param right right side of the join
+     * @param leftKeyProvider mapping function to generate the key for an element of the left side
+     * @param rightKeyProvider mapping function to generate the key for an element of the right side
+     * @see #innerJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider, JoinStrategy)
+     * @return lazily joined pairs
+     */
+    public static <L, R> Iterable<Pair<L, R>> innerJoin(Collection<L> left, Collection<R> right,
+                                                        ComposedKeyProvider<L> leftKeyProvider,
+                                                        ComposedKeyProvider<R> rightKeyProvider) {
+        return innerJoin(left, right, leftKeyProvider, rightKeyProvider, JoinStrategy.HASH);
+    }
+
+    /**
+     * In addition to {@link #innerJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider)}
+     * you can specify here the join algorithm.
+     * With {@link JoinStrategy#SORT_MERGE} the pairs are returned in the order of the left side.
+     *
+     * @param left left side of the join
+     * @param right right side of the join
+     * @param leftKeyProvider mapping function to generate the key for an element of the left side
+     * @param rightKeyProvider mapping function to generate the key for an element of the right side
+     * @param strategy join algorithm
+     * @return lazily joined pairs
+     */
+    public static <L, R> Iterable<Pair<L, R>> innerJoin(Collection<L> left, Collection<R> right,
+                                                        ComposedKeyProvider<L> leftKeyProvider,
+                                                        ComposedKeyProvider<R> rightKeyProvider,
+                                                        JoinStrategy strategy) {
+        return join(left, right, leftKeyProvider, rightKeyProvider, strategy, JoinType.INNER);
+    }
+
+    /**
+     * As {@link #innerJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider)}
+     * but left elements without any matching right element are returned as well,
+     * paired with {@code null}.
+     *
+     * @param left left side of the join
+     * @param right right side of the join
+     * @param leftKeyProvider mapping function to generate the key for an element of the left side
+     * @param rightKeyProvider mapping function to generate the key for an element of the right side
+     * @see #leftJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider, JoinStrategy)
+     * @return lazily joined pairs
+     */
+    public static <L, R> Iterable<Pair<L, R>> leftJoin(Collection<L> left, Collection<R> right,
+                                                       ComposedKeyProvider<L> leftKeyProvider,
+                                                       ComposedKeyProvider<R> rightKeyProvider) {
+        return leftJoin(left, right, leftKeyProvider, rightKeyProvider, JoinStrategy.HASH);
+    }
+
+    /**
+     * In addition to {@link #leftJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider)}
+     * you can specify here the join algorithm.
+     *
+     * @param left left side of the join
+     * @param right right side of the join
+     * @param leftKeyProvider mapping function to generate the key for an element of the left side
+     * @param rightKeyProvider mapping function to generate the key for an element of the right side
+     * @param strategy join algorithm
+     * @return lazily joined pairs
+     */
+    public static <L, R> Iterable<Pair<L, R>> leftJoin(Collection<L> left, Collection<R> right,
+                                                       ComposedKeyProvider<L> leftKeyProvider,
+                                                       ComposedKeyProvider<R> rightKeyProvider,
+                                                       JoinStrategy strategy) {
+        return join(left, right, leftKeyProvider, rightKeyProvider, strategy, JoinType.LEFT);
+    }
+
+    /**
+     * Returns all left elements without any matching right element, in the order of the left side.
+     *
+     * @param left left side of the join
+     * @param right right side of the join
+     * @param leftKeyProvider mapping function to generate the key for an element of the left side
+     * @param rightKeyProvider mapping function to generate the key for an element of the right side
+     * @see #antiJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider, JoinStrategy)
+     * @return lazily filtered left elements
+     */
+    public static <L, R> Iterable<L> antiJoin(Collection<L> left, Collection<R> right,
+                                              ComposedKeyProvider<L> leftKeyProvider,
+                                              ComposedKeyProvider<R> rightKeyProvider) {
+        return antiJoin(left, right, leftKeyProvider, rightKeyProvider, JoinStrategy.HASH);
+    }
+
+    /**
+     * In addition to {@link #antiJoin(Collection, Collection, ComposedKeyProvider, ComposedKeyProvider)}
+     * you can specify here the join algorithm.
+     *
+     * @param left left side of the join
+     * @param right right side of the join
+     * @param leftKeyProvider mapping function to generate the key for an element of the left side
+     * @param rightKeyProvider mapping function to generate the key for an element of the right side
+     * @param strategy join algorithm
+     * @return lazily filtered left elements
+     */
+    public static <L, R> Iterable<L> antiJoin(Collection<L> left, Collection<R> right,
+                                              ComposedKeyProvider<L> leftKeyProvider,
+                                              ComposedKeyProvider<R> rightKeyProvider,
+                                              JoinStrategy strategy) {
+        Iterable<Pair<L, R>> joined = join(left, right, leftKeyProvider, rightKeyProvider, strategy, JoinType.ANTI);
+        return () -> new Iterator<L>() {
+            private final Iterator<Pair<L, R>> iterator = joined.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public L next() {
+                return iterator.next().getLeft();
+            }
+        };
+    }
+
+    private static <L, R> Iterable<Pair<L, R>> join(Collection<L> left, Collection<R> right,
+                                                     ComposedKeyProvider<L> leftKeyProvider,
+                                                     ComposedKeyProvider<R> rightKeyProvider,
+                                                     JoinStrategy strategy, JoinType joinType) {
+        if (strategy == JoinStrategy.SORT_MERGE) {
+            return new SortMergeJoin<>(left, right, leftKeyProvider, rightKeyProvider, joinType);
+        }
+        return new HashJoin<>(left, right, leftKeyProvider, rightKeyProvider, joinType);
+    }
+}
@@ -1,9 +1,21 @@
 package luxmeter.collectionutils;
 
+import com.google.common.hash.BloomFilter;
+import luxmeter.collectionutils.CollectionSortUtils.ComposedKeyProvider;
+import luxmeter.functions.Function3;
+import luxmeter.functions.Function4;
+import luxmeter.functions.Function5;
+import luxmeter.functions.Function6;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.PrintStream;
+import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -312,21 +324,209 @@ public final class CollectionUtils {
      * @return `cartesian` product over the two collections
      */
     public static <K,V> List<Pair<K, V>> product(Collection<K> firstCollection, Collection<V> secondCollection) {
-        Iterable<K> repeatedFirstCollection = cycle(firstCollection, secondCollection.size());
-        List<V> repeatedSecondCollection = secondCollection.stream()
-                .flatMap(e -> toList(repeat(e, firstCollection.size())).stream())
-                .collect(Collectors.toList());
-        return toList(zip(repeatedFirstCollection, repeatedSecondCollection));
+        List<Pair<K, V>> result = new ArrayList<>(Math.multiplyExact(firstCollection.size(), secondCollection.size()));
+        for (V second : secondCollection) {
+            for (K first : firstCollection) {
+                result.add(Pair.of(first, second));
+            }
+        }
+        return result;
     }
 
     /**
      * Constructs a kind of cartesian product but without removing duplicates if any exist.
      * This can happen when the passed in collections have redundant values.
      * @param lists collections over which the product should be built
+     * @see CartesianProduct
      * @return `cartesian` product over the two collections
+     * @throws IllegalArgumentException if the product has more than {@link Integer#MAX_VALUE} rows
      */
     public static List<List<Object>> product(Collection... lists) {
-        return toList(new CartesianProduct(lists));
+        CartesianProduct product = new CartesianProduct(lists);
+        if (product.bigSize().compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
+            throw new IllegalArgumentException(String.format(
+                    "The product consists of %s rows and cannot be materialized into a list. " +
+                            "Iterate over a CartesianProduct instead.", product.bigSize()));
+        }
+        return new ArrayList<>(product);
+    }
+
+    /**
+     * As {@link #product(Collection[])} but the rows are enumerated lazily.
+     * The stream can be parallelized: it is split by ranges of row indices without materializing any row.<br/>
+     * Example:
+     * <pre>{@code
+     * long validCombinations = productStream(products, zones, chargeCodes).parallel().filter(isValid).count();
+     * }</pre>
+     * @param lists collections over which the product should be built
+     * @see CartesianProduct#spliterator()
+     * @return sequential stream over the rows of the product
+     * @throws IllegalArgumentException if the number of rows exceeds a long
+     */
+    public static Stream<List<Object>> productStream(Collection... lists) {
+        return StreamSupport.stream(new CartesianProduct(lists).spliterator(), false);
+    }
+
+    /**
+     * Typed and lazy alternative to {@link #product(Collection, Collection)}.
+     * The second collection changes fastest, e.g. (a, 1), (a, 2), (b, 1), (b, 2),
+     * as with all other products except {@link #product(Collection, Collection)}, in which the first one changes fastest,
+     * e.g. (a, 1), (b, 1), (a, 2), (b, 2). Thus, replacing the latter yields the same pairs but in a different order.
+     * @param first values of the first element of each pair
+     * @param second values of the second element of each pair
+     * @see #product2(Collection, Collection, BiFunction)
+     * @return lazily enumerated pairs
+     */
+    public static <A, B> Iterable<Pair<A, B>> product2(Collection<A> first, Collection<B> second) {
+        return product2(first, second, Pair::of);
+    }
+
+    /**
+     * Lazy cartesian product whose rows are passed directly to a mapper instead of being collected into lists.
+     * The last collection changes fastest.<br/>
+     * Example:
+     * <pre>{@code
+     * Iterable<Rate> rates = product2(products, zones, Rate::new);
+     * }</pre>
+     * @param first values of the first column
+     * @param second values of the second column
+     * @param mapper creates the result from a single combination
+     * @return lazily enumerated results
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, R> Iterable<R> product2(Collection<A> first, Collection<B> second,
+                                                 BiFunction<A, B, R> mapper) {
+        return typedProduct(new Collection[]{first, second},
+                (vectors, digits) -> mapper.apply(
+                        (A) valueAt(vectors, digits, 0),
+                        (B) valueAt(vectors, digits, 1)));
+    }
+
+    /**
+     * As {@link #product2(Collection, Collection, BiFunction)} for three collections.
+     * @return lazily enumerated results
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, R> Iterable<R> product3(Collection<A> first, Collection<B> second, Collection<C> third,
+                                                    Function3<A, B, C, R> mapper) {
+        return typedProduct(new Collection[]{first, second, third},
+                (vectors, digits) -> mapper.apply(
+                        (A) valueAt(vectors, digits, 0),
+                        (B) valueAt(vectors, digits, 1),
+                        (C) valueAt(vectors, digits, 2)));
+    }
+
+    /**
+     * As {@link #product2(Collection, Collection, BiFunction)} for four collections.
+     * @return lazily enumerated results
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, D, R> Iterable<R> product4(Collection<A> first, Collection<B> second, Collection<C> third,
+                                                       Collection<D> fourth, Function4<A, B, C, D, R> mapper) {
+        return typedProduct(new Collection[]{first, second, third, fourth},
+                (vectors, digits) -> mapper.apply(
+                        (A) valueAt(vectors, digits, 0),
+                        (B) valueAt(vectors, digits, 1),
+                        (C) valueAt(vectors, digits, 2),
+                        (D) valueAt(vectors, digits, 3)));
+    }
+
+    /**
+     * As {@link #product2(Collection, Collection, BiFunction)} for five collections.
+     * @return lazily enumerated results
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, D, E, R> Iterable<R> product5(Collection<A> first, Collection<B> second, Collection<C> third,
+                                                          Collection<D> fourth, Collection<E> fifth,
+                                                          Function5<A, B, C, D, E, R> mapper) {
+        return typedProduct(new Collection[]{first, second, third, fourth, fifth},
+                (vectors, digits) -> mapper.apply(
+                        (A) valueAt(vectors, digits, 0),
+                        (B) valueAt(vectors, digits, 1),
+                        (C) valueAt(vectors, digits, 2),
+                        (D) valueAt(vectors, digits, 3),
+                        (E) valueAt(vectors, digits, 4)));
+    }
+
+    /**
+     * As {@link #product2(Collection, Collection, BiFunction)} for six collections.
+     * @return lazily enumerated results
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, D, E, F, R> Iterable<R> product6(Collection<A> first, Collection<B> second, Collection<C> third,
+                                                             Collection<D> fourth, Collection<E> fifth, Collection<F> sixth,
+                                                             Function6<A, B, C, D, E, F, R> mapper) {
+        return typedProduct(new Collection[]{first, second, third, fourth, fifth, sixth},
+                (vectors, digits) -> mapper.apply(
+                        (A) valueAt(vectors, digits, 0),
+                        (B) valueAt(vectors, digits, 1),
+                        (C) valueAt(vectors, digits, 2),
+                        (D) valueAt(vectors, digits, 3),
+                        (E) valueAt(vectors, digits, 4),
+                        (F) valueAt(vectors, digits, 5)));
+    }
+
+    /**
+     * Lazy cartesian product over primitive values without boxing them. The last vector changes fastest.
+     * @param vectors values of each column
+     * @return lazily enumerated rows, each one a new array
+     */
+    public static Iterable<int[]> intProduct(int[]... vectors) {
+        return new TypedProduct<>(vectors.clone(), Stream.of(vectors).mapToInt(vector -> vector.length).toArray(),
+                (columns, digits) -> {
+                    int[] row = new int[digits.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = ((int[]) columns[i])[digits[i]];
+                    }
+                    return row;
+                });
+    }
+
+    /**
+     * As {@link #intProduct(int[][])} for long values.
+     * @param vectors values of each column
+     * @return lazily enumerated rows, each one a new array
+     */
+    public static Iterable<long[]> longProduct(long[]... vectors) {
+        return new TypedProduct<>(vectors.clone(), Stream.of(vectors).mapToInt(vector -> vector.length).toArray(),
+                (columns, digits) -> {
+                    long[] row = new long[digits.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = ((long[]) columns[i])[digits[i]];
+                    }
+                    return row;
+                });
+    }
+
+    /**
+     * As {@link #intProduct(int[][])} for double values.
+     * @param vectors values of each column
+     * @return lazily enumerated rows, each one a new array
+     */
+    public static Iterable<double[]> doubleProduct(double[]... vectors) {
+        return new TypedProduct<>(vectors.clone(), Stream.of(vectors).mapToInt(vector -> vector.length).toArray(),
+                (columns, digits) -> {
+                    double[] row = new double[digits.length];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = ((double[]) columns[i])[digits[i]];
+                    }
+                    return row;
+                });
+    }
+
+    private static <R> Iterable<R> typedProduct(Collection<?>[] collections, TypedProduct.RowMapper<R> rowMapper) {
+        Object[] vectors = new Object[collections.length];
+        int[] radices = new int[collections.length];
+        for (int i = 0; i < collections.length; i++) {
+            Object[] vector = collections[i].toArray();
+            vectors[i] = vector;
+            radices[i] = vector.length;
+        }
+        return new TypedProduct<>(vectors, radices, rowMapper);
+    }
+
+    private static Object valueAt(Object[] vectors, int[] digits, int column) {
+        return ((Object[]) vectors[column])[digits[column]];
     }
 
     /**
@@ -353,6 +553,335 @@ public final class CollectionUtils {
         return subtract;
     }
 
+    /**
+     * Groups the elements of a collection by a user provided key generator.
+     * The key generator is the same as the one used for sorting
+     * (see {@link CollectionSortUtils#sortedByKeys(Collection, ComposedKeyProvider)}).
+     * Each key is wrapped into a {@link ComposedKey} which computes its hash code only once.<br/>
+     * Example:
+     * <pre>{@code
+     * Map<ComposedKey, List<Rate>> ratesByProductAndZone = groupByKeys(rates,
+     *          rate -> tuple(rate.getProduct(), rate.getZone()));
+     * }</pre>
+     * @param collection collection to group
+     * @param keyProvider mapping function to generate the key for an element of the collection
+     * @param <T> type of the elements within the collection
+     * @see #groupByKeys(Collection, ComposedKeyProvider, ExecutionMode)
+     * @return groups whose elements keep their encounter order
+     */
+    public static <T> Map<ComposedKey, List<T>> groupByKeys(Collection<T> collection, ComposedKeyProvider<T> keyProvider) {
+        return groupByKeys(collection, keyProvider, ExecutionMode.SEQUENTIAL);
+    }
+
+    /**
+     * In addition to {@link #groupByKeys(Collection, ComposedKeyProvider)} the grouping can be done in parallel.
+     * In this case each thread groups into its own map and the maps are merged afterwards.
+     * The elements within a group keep their encounter order in both modes.
+     * @param collection collection to group
+     * @param keyProvider mapping function to generate the key for an element of the collection
+     * @param mode sequential or parallel grouping
+     * @param <T> type of the elements within the collection
+     * @return groups whose elements keep their encounter order
+     */
+    public static <T> Map<ComposedKey, List<T>> groupByKeys(Collection<T> collection, ComposedKeyProvider<T> keyProvider,
+                                                             ExecutionMode mode) {
+        Collector<T, Map<ComposedKey, List<T>>, Map<ComposedKey, List<T>>> grouping = Collector.of(
+                HashMap::new,
+                (groups, element) -> groups.computeIfAbsent(
+                        ComposedKey.wrap(keyProvider.apply(element)), key -> new ArrayList<>()).add(element),
+                (groups, otherGroups) -> {
+                    otherGroups.forEach((key, elements) -> groups.merge(key, elements, (a, b) -> {
+                        a.addAll(b);
+                        return a;
+                    }));
+                    return groups;
+                });
+        return stream(collection, mode).collect(grouping);
+    }
+
+    /**
+     * Counts the elements of a collection per key. See {@link #groupByKeys(Collection, ComposedKeyProvider)}
+     * for how to define the key. The counting is done with primitive counters, the counts are boxed only once per key.
+     * @param collection collection to count
+     * @param keyProvider mapping function to generate the key for an element of the collection
+     * @param <T> type of the elements within the collection
+     * @see #countByKeys(Collection, ComposedKeyProvider, ExecutionMode)
+     * @return number of elements per key
+     */
+    public static <T> Map<ComposedKey, Long> countByKeys(Collection<T> collection, ComposedKeyProvider<T> keyProvider) {
+        return countByKeys(collection, keyProvider, ExecutionMode.SEQUENTIAL);
+    }
+
+    /**
+     * In addition to {@link #countByKeys(Collection, ComposedKeyProvider)} the counting can be done in parallel.
+     * In this case each thread counts into its own map and the maps are merged afterwards.
+     * @param collection collection to count
+     * @param keyProvider mapping function to generate the key for an element of the collection
+     * @param mode sequential or parallel counting
+     * @param <T> type of the elements within the collection
+     * @return number of elements per key
+     */
+    public static <T> Map<ComposedKey, Long> countByKeys(Collection<T> collection, ComposedKeyProvider<T> keyProvider,
+                                                         ExecutionMode mode) {
+        Collector<T, Map<ComposedKey, long[]>, Map<ComposedKey, long[]>> counting = Collector.of(
+                HashMap::new,
+                (counters, element) -> counters.computeIfAbsent(
+                        ComposedKey.wrap(keyProvider.apply(element)), key -> new long[1])[0]++,
+                (counters, otherCounters) -> {
+                    otherCounters.forEach((key, counter) -> counters.merge(key, counter, (a, b) -> {
+                        a[0] += b[0];
+                        return a;
+                    }));
+                    return counters;
+                });
+        Map<ComposedKey, long[]> counters = stream(collection, mode).collect(counting);
+        Map<ComposedKey, Long> result = new HashMap<>(counters.size() * 4 / 3 + 1);
+        counters.forEach((key, counter) -> result.put(key, counter[0]));
+        return result;
+    }
+
+    /**
+     * Removes elements with duplicate keys lazily. Only the first element with a given key is kept.
+     * See {@link #groupByKeys(Collection, ComposedKeyProvider)} for how to define the key.
+     * Every distinct key is kept in memory. For unbounded sources consider
+     * {@link #distinctByKeys(Iterable, ComposedKeyProvider, long, double)}.
+     * @param iterable elements to remove duplicates from
+     * @param keyProvider mapping function to generate the key for an element
+     * @param <T> type of the elements
+     * @return iterable without elements with duplicate keys
+     */
+    public static <T> Iterable<T> distinctByKeys(Iterable<T> iterable, ComposedKeyProvider<T> keyProvider) {
+        return () -> toStream(iterable).filter(firstOccurrence(keyProvider, false)).iterator();
+    }
+
+    /**
+     * As {@link #distinctByKeys(Iterable, ComposedKeyProvider)} but the keys are remembered
+     * by a Bloom filter of fixed size instead of a set. Thus, the memory doesn't grow with the number of elements.
+     * The price to pay is that an element is dropped with the given probability
+     * although its key has not been encountered before. Elements with duplicate keys are always dropped.<br/>
+     * The filter holds the given false positive probability as long as the number of distinct keys
+     * doesn't exceed the expected number.
+     * @param iterable elements to remove duplicates from
+     * @param keyProvider mapping function to generate the key for an element
+     * @param expectedKeys expected number of distinct keys
+     * @param falsePositiveProbability probability of dropping an element with an unseen key, e.g. 0.01
+     * @param <T> type of the elements
+     * @return iterable without elements with duplicate keys
+     */
+    public static <T> Iterable<T> distinctByKeys(Iterable<T> iterable, ComposedKeyProvider<T> keyProvider,
+                                                 long expectedKeys, double falsePositiveProbability) {
+        return () -> toStream(iterable)
+                .filter(firstOccurrence(keyProvider, expectedKeys, falsePositiveProbability, false))
+                .iterator();
+    }
+
+    /**
+     * Convenient method to use {@link #distinctByKeys(Iterable, ComposedKeyProvider)} on streams.
+     * Parallel streams are supported, also if the stream is turned parallel after this call.
+     * In a parallel stream any element of a key may be kept instead of the first one.
+     * @param stream elements to remove duplicates from
+     * @param keyProvider mapping function to generate the key for an element
+     * @param <T> type of the elements
+     * @return stream without elements with duplicate keys
+     */
+    public static <T> Stream<T> distinctByKeys(Stream<T> stream, ComposedKeyProvider<T> keyProvider) {
+        // the stream may still be turned parallel
+        return stream.filter(firstOccurrence(keyProvider, true));
+    }
+
+    /**
+     * Convenient method to use {@link #distinctByKeys(Iterable, ComposedKeyProvider, long, double)} on streams.
+     * Parallel streams are supported, also if the stream is turned parallel after this call.
+     * In a parallel stream any element of a key may be kept instead of the first one.
+     * @param stream elements to remove duplicates from
+     * @param keyProvider mapping function to generate the key for an element
+     * @param expectedKeys expected number of distinct keys
+     * @param falsePositiveProbability probability of dropping an element with an unseen key, e.g. 0.01
+     * @param <T> type of the elements
+     * @return stream without elements with duplicate keys
+     */
+    public static <T> Stream<T> distinctByKeys(Stream<T> stream, ComposedKeyProvider<T> keyProvider,
+                                               long expectedKeys, double falsePositiveProbability) {
+        // the stream may still be turned parallel
+        return stream.filter(firstOccurrence(keyProvider, expectedKeys, falsePositiveProbability, true));
+    }
+
+    private static <T> Predicate<T> firstOccurrence(ComposedKeyProvider<T> keyProvider, boolean concurrent) {
+        Set<ComposedKey> seenKeys = concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>();
+        return element -> seenKeys.add(ComposedKey.wrap(keyProvider.apply(element)));
+    }
+
+    private static <T> Predicate<T> firstOccurrence(ComposedKeyProvider<T> keyProvider,
+                                                    long expectedKeys, double falsePositiveProbability,
+                                                    boolean concurrent) {
+        BloomFilter<ComposedKey> seenKeys = BloomFilter.create(
+                ComposedKeyFunnel.INSTANCE, expectedKeys, falsePositiveProbability);
+        if (concurrent) {
+            return element -> {
+                ComposedKey key = ComposedKey.wrap(keyProvider.apply(element));
+                synchronized (seenKeys) {
+                    return seenKeys.put(key);
+                }
+            };
+        }
+        // put returns true if the filter changed, i.e. the key has definitely not been seen before
+        return element -> seenKeys.put(ComposedKey.wrap(keyProvider.apply(element)));
+    }
+
+    /**
+     * Compares two snapshots of a collection. Elements are identified by a user provided key generator
+     * (see {@link #groupByKeys(Collection, ComposedKeyProvider)}). Elements with the same key are compared
+     * with the given equality function, unequal ones are reported as changed.
+     * The keys have to be unique within each snapshot.<br/>
+     * Example:
+     * <pre>{@code
+     * Diff<Rate> diff = diff(yesterday, today, rate -> tuple(rate.getChargeCode(), rate.getZone()), Rate::equals);
+     * }</pre>
+     * @param oldElements old snapshot
+     * @param newElements new snapshot
+     * @param keyProvider mapping function to generate the key for an element
+     * @param equality returns true if two elements with the same key are unchanged
+     * @param <T> type of the elements
+     * @see #diff(Collection, Collection, ComposedKeyProvider, BiPredicate, JoinStrategy)
+     * @return added, removed and changed elements
+     * @throws IllegalArgumentException if a key is not unique within a snapshot
+     */
+    public static <T> Diff<T> diff(Collection<T> oldElements, Collection<T> newElements,
+                                   ComposedKeyProvider<T> keyProvider, BiPredicate<T, T> equality) {
+        return diff(oldElements, newElements, keyProvider, equality, JoinStrategy.HASH);
+    }
+
+    /**
+     * In addition to {@link #diff(Collection, Collection, ComposedKeyProvider, BiPredicate)}
+     * you can specify here the algorithm. Use {@link JoinStrategy#SORT_MERGE} if both snapshots
+     * are sorted by their keys already (ascending, null values last) to compare them in a single pass.
+     * @param oldElements old snapshot
+     * @param newElements new snapshot
+     * @param keyProvider mapping function to generate the key for an element
+     * @param equality returns true if two elements with the same key are unchanged
+     * @param strategy hashing or merging of the snapshots
+     * @param <T> type of the elements
+     * @return added, removed and changed elements
+     * @throws IllegalArgumentException if a key is not unique within a snapshot or a snapshot is not sorted as expected
+     */
+    public static <T> Diff<T> diff(Collection<T> oldElements, Collection<T> newElements,
+                                   ComposedKeyProvider<T> keyProvider, BiPredicate<T, T> equality,
+                                   JoinStrategy strategy) {
+        return new Diff<>(new SnapshotDiff<>(oldElements, newElements, keyProvider, equality, strategy));
+    }
+
+    /**
+     * As {@link #diff(Collection, Collection, ComposedKeyProvider, BiPredicate, JoinStrategy)} but the differences
+     * are computed lazily while consuming the stream. With {@link JoinStrategy#SORT_MERGE} neither snapshot
+     * is kept in memory, with {@link JoinStrategy#HASH} only the old one.
+     * @param oldElements old snapshot
+     * @param newElements new snapshot
+     * @param keyProvider mapping function to generate the key for an element
+     * @param equality returns true if two elements with the same key are unchanged
+     * @param strategy hashing or merging of the snapshots
+     * @param <T> type of the elements
+     * @return stream of differences
+     */
+    public static <T> Stream<DiffEntry<T>> diffStream(Iterable<T> oldElements, Iterable<T> newElements,
+                                                      ComposedKeyProvider<T> keyProvider, BiPredicate<T, T> equality,
+                                                      JoinStrategy strategy) {
+        return toStream(new SnapshotDiff<>(oldElements, newElements, keyProvider, equality, strategy));
+    }
+
+    /**
+     * Draws a uniform random sample of k elements in a single pass (reservoir sampling).
+     * Only the sample is kept in memory, so the iterable may be arbitrarily large.
+     * @param iterable elements to draw the sample from
+     * @param k size of the sample
+     * @param random source of randomness
+     * @param <T> type of the elements
+     * @see #toSample(int, Random)
+     * @return sample of k elements or all elements if there are fewer, in no particular order
+     */
+    public static <T> List<T> sample(Iterable<T> iterable, int k, Random random) {
+        Reservoir<T> reservoir = new Reservoir<>(k, random);
+        for (T t : iterable) {
+            reservoir.add(t);
+        }
+        return reservoir.toList();
+    }
+
+    /**
+     * Collector form of {@link #sample(Iterable, int, Random)}. Can be used with parallel streams:
+     * the samples of the substreams are merged into a uniform sample of the whole stream.
+     * @param k size of the sample
+     * @param random source of randomness
+     * @param <T> type of the elements
+     * @return collector drawing a sample of k elements
+     */
+    public static <T> Collector<T, ?, List<T>> toSample(int k, Random random) {
+        return Collector.<T, Reservoir<T>, List<T>>of(
+                () -> new Reservoir<>(k, random), Reservoir::add, Reservoir::merge, Reservoir::toList);
+    }
+
+    /**
+     * Draws a uniform random sample of k elements per group in a single pass.
+     * Groups are defined by a user provided key generator (see {@link #groupByKeys(Collection, ComposedKeyProvider)}).
+     * Only the samples are kept in memory.
+     * @param iterable elements to draw the samples from
+     * @param keyProvider mapping function to generate the group key for an element
+     * @param kPerGroup size of the sample per group
+     * @param <T> type of the elements
+     * @see #stratifiedSample(Iterable, ComposedKeyProvider, int, Random)
+     * @return samples per group
+     */
+    public static <T> Map<ComposedKey, List<T>> stratifiedSample(Iterable<T> iterable, ComposedKeyProvider<T> keyProvider,
+                                                                  int kPerGroup) {
+        return stratifiedSample(iterable, keyProvider, kPerGroup, new Random());
+    }
+
+    /**
+     * In addition to {@link #stratifiedSample(Iterable, ComposedKeyProvider, int)} you can specify
+     * here the source of randomness, e.g. to get reproducible samples.
+     * @param iterable elements to draw the samples from
+     * @param keyProvider mapping function to generate the group key for an element
+     * @param kPerGroup size of the sample per group
+     * @param random source of randomness
+     * @param <T> type of the elements
+     * @see #toStratifiedSample(ComposedKeyProvider, int, Random)
+     * @return samples per group
+     */
+    public static <T> Map<ComposedKey, List<T>> stratifiedSample(Iterable<T> iterable, ComposedKeyProvider<T> keyProvider,
+                                                                  int kPerGroup, Random random) {
+        return toStream(iterable).collect(toStratifiedSample(keyProvider, kPerGroup, random));
+    }
+
+    /**
+     * Collector form of {@link #stratifiedSample(Iterable, ComposedKeyProvider, int, Random)}.
+     * Can be used with parallel streams.
+     * @param keyProvider mapping function to generate the group key for an element
+     * @param kPerGroup size of the sample per group
+     * @param random source of randomness
+     * @param <T> type of the elements
+     * @return collector drawing samples per group
+     */
+    public static <T> Collector<T, ?, Map<ComposedKey, List<T>>> toStratifiedSample(ComposedKeyProvider<T> keyProvider,
+                                                                                      int kPerGroup, Random random) {
+        return Collector.<T, Map<ComposedKey, Reservoir<T>>, Map<ComposedKey, List<T>>>of(
+                HashMap::new,
+                (reservoirs, element) -> reservoirs.computeIfAbsent(
+                        ComposedKey.wrap(keyProvider.apply(element)), key -> new Reservoir<>(kPerGroup, random))
+                        .add(element),
+                (reservoirs, otherReservoirs) -> {
+                    otherReservoirs.forEach((key, reservoir) -> reservoirs.merge(key, reservoir, Reservoir::merge));
+                    return reservoirs;
+                },
+                reservoirs -> {
+                    Map<ComposedKey, List<T>> samples = new HashMap<>(reservoirs.size() * 4 / 3 + 1);
+                    reservoirs.forEach((key, reservoir) -> samples.put(key, reservoir.toList()));
+                    return samples;
+                });
+    }
+
+    private static <T> Stream<T> stream(Collection<T> collection, ExecutionMode mode) {
+        return mode == ExecutionMode.PARALLEL ? collection.parallelStream() : collection.stream();
+    }
+
     /**
      * Convenient method to print an iterable.
      * @param iterable iterable to print
@@ -0,0 +1,81 @@
+package luxmeter.collectionutils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable key made of the parts a {@link CollectionSortUtils.ComposedKeyProvider} returns.
+ * The hash code is computed once on construction, so that the key can be looked up
+ * repeatedly in hash based collections without rehashing all of its parts.
+ * Two keys are equal if their parts are equal part by part. Null parts are considered equal.
+ *
+ * @see CollectionUtils#groupByKeys(java.util.Collection, CollectionSortUtils.ComposedKeyProvider)
+ * @see CollectionUtils#countByKeys(java.util.Collection, CollectionSortUtils.ComposedKeyProvider)
+ */
+public final class ComposedKey {
+    private final Comparable[] parts;
+    private final int hash;
+
+    private ComposedKey(Comparable[] parts) {
+        this.parts = parts;
+        this.hash = Arrays.hashCode(parts);
+    }
+
+    /**
+     * @param parts parts of the key, e.g. created via {@link CollectionSortUtils#tuple(Comparable[])}
+     * @return key consisting of a copy of the passed in parts
+     */
+    public static ComposedKey of(Comparable... parts) {
+        return new ComposedKey(parts.clone());
+    }
+
+    /**
+     * Creates a key without copying the parts. Used internally for arrays freshly returned by a key provider.
+     * @param parts parts of the key which must not be modified afterwards
+     * @return key backed by the passed in parts
+     */
+    static ComposedKey wrap(Comparable[] parts) {
+        return new ComposedKey(parts);
+    }
+
+    /**
+     * @param index position of the part
+     * @param <R> type of the part (for convenience)
+     * @return part at the given position
+     */
+    @SuppressWarnings("unchecked")
+    public <R extends Comparable> R get(int index) {
+        return (R) parts[index];
+    }
+
+    /**
+     * @return number of parts this key consists of
+     */
+    public int size() {
+        return parts.length;
+    }
+
+    /**
+     * @return copy of the parts this key consists of
+     */
+    public Comparable[] toArray() {
+        return parts.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ComposedKey that = (ComposedKey) o;
+        return hash == that.hash && Arrays.equals(parts, that.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(parts);
+    }
+}
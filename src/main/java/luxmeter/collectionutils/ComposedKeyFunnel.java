@@ -0,0 +1,31 @@
+package luxmeter.collectionutils;
+
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * Feeds the parts of a {@link ComposedKey} into a Bloom filter.
+ * Strings and integral numbers are fed with their full content,
+ * any other part is represented by its hash code.
+ */
+enum ComposedKeyFunnel implements Funnel<ComposedKey> {
+    INSTANCE;
+
+    @Override
+    public void funnel(ComposedKey key, PrimitiveSink into) {
+        for (int i = 0; i < key.size(); i++) {
+            Comparable part = key.get(i);
+            if (part instanceof CharSequence) {
+                into.putUnencodedChars((CharSequence) part);
+            }
+            else if (part instanceof Long || part instanceof Integer || part instanceof Short || part instanceof Byte) {
+                into.putLong(((Number) part).longValue());
+            }
+            else {
+                into.putInt(part == null ? 0 : part.hashCode());
+            }
+            // separator, so that ("ab", "c") and ("a", "bc") are fed differently
+            into.putByte((byte) 0);
+        }
+    }
+}
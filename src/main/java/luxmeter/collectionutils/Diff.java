@@ -0,0 +1,61 @@
+package luxmeter.collectionutils;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Differences between two snapshots of a collection.
+ * @see CollectionUtils#diff(java.util.Collection, java.util.Collection,
+ * CollectionSortUtils.ComposedKeyProvider, java.util.function.BiPredicate)
+ */
+public final class Diff<T> {
+    private final List<T> added = new ArrayList<>();
+    private final List<T> removed = new ArrayList<>();
+    private final List<Pair<T, T>> changed = new ArrayList<>();
+
+    Diff(Iterable<DiffEntry<T>> entries) {
+        for (DiffEntry<T> entry : entries) {
+            switch (entry.getType()) {
+                case ADDED:
+                    added.add(entry.getNewElement());
+                    break;
+                case REMOVED:
+                    removed.add(entry.getOldElement());
+                    break;
+                default:
+                    changed.add(Pair.of(entry.getOldElement(), entry.getNewElement()));
+            }
+        }
+    }
+
+    /**
+     * @return elements existing only in the new snapshot
+     */
+    public List<T> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * @return elements existing only in the old snapshot
+     */
+    public List<T> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * @return pairs of old and new element having the same key but being unequal
+     */
+    public List<Pair<T, T>> getChanged() {
+        return Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * @return true if the snapshots don't differ
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
@@ -0,0 +1,61 @@
+package luxmeter.collectionutils;
+
+import java.util.Objects;
+
+/**
+ * Single difference between two snapshots of a collection.
+ * Used by {@link CollectionUtils#diffStream(Iterable, Iterable, CollectionSortUtils.ComposedKeyProvider,
+ * java.util.function.BiPredicate, JoinStrategy)}.
+ */
+public final class DiffEntry<T> {
+    private final DiffType type;
+    private final T oldElement;
+    private final T newElement;
+
+    DiffEntry(DiffType type, T oldElement, T newElement) {
+        this.type = type;
+        this.oldElement = oldElement;
+        this.newElement = newElement;
+    }
+
+    /**
+     * @return kind of the difference
+     */
+    public DiffType getType() {
+        return type;
+    }
+
+    /**
+     * @return element of the old snapshot or {@code null} if the element was added
+     */
+    public T getOldElement() {
+        return oldElement;
+    }
+
+    /**
+     * @return element of the new snapshot or {@code null} if the element was removed
+     */
+    public T getNewElement() {
+        return newElement;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        DiffEntry<?> that = (DiffEntry<?>) o;
+        return type == that.type
+                && Objects.equals(oldElement, that.oldElement)
+                && Objects.equals(newElement, that.newElement);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, oldElement, newElement);
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + oldElement + " -> " + newElement + ")";
+    }
+}
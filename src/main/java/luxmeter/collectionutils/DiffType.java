@@ -0,0 +1,14 @@
+package luxmeter.collectionutils;
+
+/**
+ * Enum specifying how an element differs between two snapshots.
+ * @see DiffEntry
+ */
+public enum DiffType {
+    /** element exists only in the new snapshot */
+    ADDED,
+    /** element exists only in the old snapshot */
+    REMOVED,
+    /** element exists in both snapshots but has changed */
+    CHANGED
+}
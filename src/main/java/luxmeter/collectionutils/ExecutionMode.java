@@ -0,0 +1,10 @@
+package luxmeter.collectionutils;
+
+/**
+ * Enum specifying whether an aggregation is computed by the calling thread only
+ * or spread over the threads of a fork-join pool (the common one unless configured otherwise).
+ */
+public enum ExecutionMode {
+    SEQUENTIAL,
+    PARALLEL
+}
@@ -0,0 +1,89 @@
+package luxmeter.collectionutils;
+
+import java.util.*;
+
+/**
+ * Iterates over the rows of a {@link CartesianProduct} in reflected mixed-radix Gray code order:
+ * two consecutive rows differ in exactly one column, and only by one position within that column's vector.
+ * Consumers can therefore update values derived from the previous row instead of recomputing them,
+ * {@link #changedColumn()} tells which column changed.<br/>
+ * Each step takes constant time (loopless generation after Knuth, TAOCP 7.2.1.1, Algorithm H).
+ *
+ * @see CartesianProduct#grayCodeIterator()
+ */
+public final class GrayCodeIterator implements Iterator<List<Object>> {
+    private final CartesianProduct product;
+    // columns which can change at all (more than one value), the last column of the product first
+    private final int[] columns;
+    private final int[] radices;
+    // current position per column of the product
+    private final int[] digits;
+    // focus pointers and directions of Algorithm H, indexed like columns
+    private final int[] focus;
+    private final int[] directions;
+    private boolean exhausted;
+    private int nextChangedColumn = -1;
+    private int changedColumn = -1;
+
+    GrayCodeIterator(CartesianProduct product) {
+        this.product = product;
+        int[] productRadices = product.radices();
+        this.digits = new int[productRadices.length];
+        this.columns = new int[(int) Arrays.stream(productRadices).filter(radix -> radix > 1).count()];
+        this.radices = new int[columns.length];
+        for (int column = productRadices.length - 1, i = 0; column >= 0; column--) {
+            if (productRadices[column] > 1) {
+                columns[i] = column;
+                radices[i++] = productRadices[column];
+            }
+        }
+        this.focus = new int[columns.length + 1];
+        this.directions = new int[columns.length];
+        for (int i = 0; i <= columns.length; i++) {
+            focus[i] = i;
+        }
+        Arrays.fill(directions, 1);
+        this.exhausted = product.bigSize().signum() == 0;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !exhausted;
+    }
+
+    @Override
+    public List<Object> next() {
+        if (exhausted) {
+            throw new NoSuchElementException();
+        }
+        List<Object> row = product.vectorOf(digits);
+        changedColumn = nextChangedColumn;
+        advance();
+        return row;
+    }
+
+    /**
+     * @return index of the column in which the row returned last differs from its predecessor,
+     * -1 for the first row
+     */
+    public int changedColumn() {
+        return changedColumn;
+    }
+
+    private void advance() {
+        int j = focus[0];
+        focus[0] = 0;
+        if (j == columns.length) {
+            exhausted = true;
+            return;
+        }
+        int column = columns[j];
+        digits[column] += directions[j];
+        if (digits[column] == 0 || digits[column] == radices[j] - 1) {
+            directions[j] = -directions[j];
+            focus[j] = focus[j + 1];
+            focus[j + 1] = j + 1;
+        }
+        nextChangedColumn = column;
+    }
+}
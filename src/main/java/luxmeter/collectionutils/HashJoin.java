@@ -0,0 +1,130 @@
+package luxmeter.collectionutils;
+
+import com.google.common.collect.AbstractIterator;
+import luxmeter.collectionutils.CollectionSortUtils.ComposedKeyProvider;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+/**
+ * Hash join over two collections. The hash table is always built on the smaller side,
+ * the other side is streamed through it lazily.
+ * For left and anti joins the unmatched left elements are emitted as pairs with a {@code null} right side.
+ */
+final class HashJoin<L, R> implements Iterable<Pair<L, R>> {
+    private final Collection<L> left;
+    private final Collection<R> right;
+    private final ComposedKeyProvider<L> leftKeyProvider;
+    private final ComposedKeyProvider<R> rightKeyProvider;
+    private final JoinType joinType;
+
+    HashJoin(Collection<L> left, Collection<R> right,
+             ComposedKeyProvider<L> leftKeyProvider, ComposedKeyProvider<R> rightKeyProvider, JoinType joinType) {
+        this.left = left;
+        this.right = right;
+        this.leftKeyProvider = leftKeyProvider;
+        this.rightKeyProvider = rightKeyProvider;
+        this.joinType = joinType;
+    }
+
+    @Override
+    public Iterator<Pair<L, R>> iterator() {
+        return left.size() < right.size() ? new LeftBuildIterator() : new RightBuildIterator();
+    }
+
+    private static ComposedKey key(Comparable[] key) {
+        return ComposedKey.wrap(key);
+    }
+
+    /**
+     * Builds the table on the right side and streams the left one.
+     */
+    private final class RightBuildIterator extends AbstractIterator<Pair<L, R>> {
+        private final Map<ComposedKey, List<R>> table = new HashMap<>();
+        private final Iterator<L> probe = left.iterator();
+        private L current;
+        private Iterator<R> matches = Collections.emptyIterator();
+
+        RightBuildIterator() {
+            for (R r : right) {
+                table.computeIfAbsent(key(rightKeyProvider.apply(r)), k -> new ArrayList<>(1)).add(r);
+            }
+        }
+
+        @Override
+        protected Pair<L, R> computeNext() {
+            while (true) {
+                if (matches.hasNext()) {
+                    return Pair.of(current, matches.next());
+                }
+                if (!probe.hasNext()) {
+                    return endOfData();
+                }
+                current = probe.next();
+                List<R> found = table.get(key(leftKeyProvider.apply(current)));
+                if (found == null) {
+                    if (joinType != JoinType.INNER) {
+                        return Pair.of(current, null);
+                    }
+                }
+                else if (joinType != JoinType.ANTI) {
+                    matches = found.iterator();
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the table on the left side and streams the right one.
+     * Left elements are referenced by their position, so that the unmatched ones can be emitted
+     * in encounter order once the right side is exhausted.
+     */
+    private final class LeftBuildIterator extends AbstractIterator<Pair<L, R>> {
+        private final List<L> build = new ArrayList<>(left);
+        private final Map<ComposedKey, List<Integer>> table = new HashMap<>();
+        private final boolean[] matched = new boolean[build.size()];
+        private final Iterator<R> probe = right.iterator();
+        private R current;
+        private Iterator<Integer> matches = Collections.emptyIterator();
+        private int unmatchedIndex = 0;
+
+        LeftBuildIterator() {
+            for (int i = 0; i < build.size(); i++) {
+                table.computeIfAbsent(key(leftKeyProvider.apply(build.get(i))), k -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        @Override
+        protected Pair<L, R> computeNext() {
+            while (matches.hasNext() || probe.hasNext()) {
+                if (matches.hasNext()) {
+                    int index = matches.next();
+                    matched[index] = true;
+                    return Pair.of(build.get(index), current);
+                }
+                current = probe.next();
+                List<Integer> found = joinType == JoinType.ANTI
+                        ? table.remove(key(rightKeyProvider.apply(current)))
+                        : table.get(key(rightKeyProvider.apply(current)));
+                if (found == null) {
+                    continue;
+                }
+                if (joinType == JoinType.ANTI) {
+                    found.forEach(index -> matched[index] = true);
+                }
+                else {
+                    matches = found.iterator();
+                }
+            }
+            if (joinType != JoinType.INNER) {
+                while (unmatchedIndex < matched.length) {
+                    int index = unmatchedIndex++;
+                    if (!matched[index]) {
+                        return Pair.of(build.get(index), null);
+                    }
+                }
+            }
+            return endOfData();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package luxmeter.collectionutils;
+
+/**
+ * Enum specifying the algorithm used by the join methods of {@link CollectionJoinUtils}.
+ */
+public enum JoinStrategy {
+    /**
+     * Builds a hash table on the smaller side and probes it with the other one.
+     * No requirements on the order of the inputs.
+     */
+    HASH,
+    /**
+     * Merges both sides in a single pass.
+     * Both inputs must already be sorted by their keys in ascending order with null values last,
+     * i.e. as {@link CollectionSortUtils#sortedByKeys(java.util.Collection,
+     * CollectionSortUtils.ComposedKeyProvider)} would sort them.
+     */
+    SORT_MERGE
+}
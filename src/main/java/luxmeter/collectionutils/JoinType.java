@@ -0,0 +1,10 @@
+package luxmeter.collectionutils;
+
+/**
+ * Kind of join the internal join implementations have to compute.
+ */
+enum JoinType {
+    INNER,
+    LEFT,
+    ANTI
+}
@@ -0,0 +1,38 @@
+package luxmeter.collectionutils;
+
+/**
+ * Odometer over mixed radices: the last digit changes fastest
+ * and carries over into the preceding digits when it wraps around.
+ */
+final class MixedRadixCounter {
+    private final int[] radices;
+    private final int[] digits;
+
+    MixedRadixCounter(int[] radices) {
+        this.radices = radices;
+        this.digits = new int[radices.length];
+    }
+
+    MixedRadixCounter(int[] radices, int[] digits) {
+        this.radices = radices;
+        this.digits = digits;
+    }
+
+    int[] digits() {
+        return digits;
+    }
+
+    /**
+     * Advances the counter by one. Amortized O(1) since a carry over happens only every radix'th step.
+     * @return the leftmost digit that has changed or -1 if the counter wrapped around completely
+     */
+    int increment() {
+        for (int i = digits.length - 1; i >= 0; i--) {
+            if (++digits[i] < radices[i]) {
+                return i;
+            }
+            digits[i] = 0;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,76 @@
+package luxmeter.collectionutils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Convenient builder to create a cartesian product whose invalid combinations are skipped
+ * while enumerating instead of being filtered afterwards.<br/>
+ * A constraint refers to the columns added so far and is checked as soon as the partial row contains them.
+ * If it fails, none of the rows starting with that prefix is built. Example:
+ * <pre>{@code
+ * Iterable<List<Object>> rows = ProductBuilder.create()
+ *         .withValues(products)
+ *         .withValues(zones)
+ *         // zone B is never valid for product TX
+ *         .withConstraint(prefix -> !(prefix.get(0).equals("TX") && prefix.get(1).equals("B")))
+ *         .withValues(chargeCodes)
+ *         .build();
+ * }</pre>
+ * The rows are enumerated in the same order as by {@link CartesianProduct}.
+ */
+public final class ProductBuilder {
+    private final List<Collection<?>> vectors = new ArrayList<>();
+    private final List<List<Predicate<List<Object>>>> constraints = new ArrayList<>();
+
+    private ProductBuilder() {
+    }
+
+    /**
+     * Constructor method for this builder.
+     * @return builder without any columns
+     */
+    public static ProductBuilder create() {
+        return new ProductBuilder();
+    }
+
+    /**
+     * Adds the next column to the product.
+     * @param values all possible values of the column
+     * @return this
+     */
+    public ProductBuilder withValues(Collection<?> values) {
+        vectors.add(values);
+        constraints.add(new ArrayList<>());
+        return this;
+    }
+
+    /**
+     * Adds a constraint on the columns added so far.
+     * The constraint is passed the partial row consisting of these columns, in the order they were added.
+     * @param constraint returns false if no row starting with the passed in partial row is valid
+     * @return this
+     */
+    public ProductBuilder withConstraint(Predicate<List<Object>> constraint) {
+        if (vectors.isEmpty()) {
+            throw new IllegalArgumentException("A constraint can be added only after at least one column was added.");
+        }
+        constraints.get(constraints.size() - 1).add(constraint);
+        return this;
+    }
+
+    /**
+     * Builds the product. The rows are enumerated lazily depth-first on each iteration.
+     * @return product without the rows violating any constraint
+     */
+    public Iterable<List<Object>> build() {
+        // copy each column's constraints, so that constraints added afterwards don't affect this product
+        List<List<Predicate<List<Object>>>> constraintsCopy = new ArrayList<>(constraints.size());
+        for (List<Predicate<List<Object>>> columnConstraints : constraints) {
+            constraintsCopy.add(new ArrayList<>(columnConstraints));
+        }
+        return new PrunedProduct(new ArrayList<>(vectors), constraintsCopy);
+    }
+}
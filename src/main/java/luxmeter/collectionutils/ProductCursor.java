@@ -0,0 +1,91 @@
+package luxmeter.collectionutils;
+
+/**
+ * Cursor over the rows of a {@link CartesianProduct} which doesn't allocate anything per row.
+ * The values of the current row are kept in a single buffer, only the columns that changed are updated
+ * when moving on. Example:
+ * <pre>{@code
+ * ProductCursor cursor = product.cursor();
+ * while (cursor.next()) {
+ *     String product = cursor.get(0);
+ *     int zoneOrdinal = cursor.ordinal(1);
+ *     ...
+ * }
+ * }</pre>
+ *
+ * @see CartesianProduct#cursor()
+ */
+public final class ProductCursor {
+    private final CartesianProduct product;
+    private final MixedRadixCounter counter;
+    private final Object[] row;
+    private boolean started;
+    private boolean exhausted;
+
+    ProductCursor(CartesianProduct product) {
+        this.product = product;
+        this.counter = new MixedRadixCounter(product.radices());
+        this.row = new Object[product.radices().length];
+        this.exhausted = product.bigSize().signum() == 0;
+    }
+
+    /**
+     * Moves the cursor to the next row. Has to be called once before accessing the first row.
+     * @return false if there are no more rows
+     */
+    public boolean next() {
+        if (exhausted) {
+            return false;
+        }
+        int firstChangedColumn = 0;
+        if (started) {
+            firstChangedColumn = counter.increment();
+        }
+        started = true;
+        if (firstChangedColumn < 0) {
+            exhausted = true;
+            return false;
+        }
+        product.fillRow(counter.digits(), firstChangedColumn, row);
+        return true;
+    }
+
+    /**
+     * @param column index of the column
+     * @param <R> type of the value (for convenience)
+     * @return value of the current row in the given column
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(int column) {
+        return (R) row[column];
+    }
+
+    /**
+     * @param column index of the column
+     * @return position of the current value within the values of the given column
+     */
+    public int ordinal(int column) {
+        return counter.digits()[column];
+    }
+
+    /**
+     * @return number of columns
+     */
+    public int columnCount() {
+        return row.length;
+    }
+
+    /**
+     * @return buffer with the values of the current row, which is overwritten by {@link #next()}
+     */
+    Object[] row() {
+        return row;
+    }
+
+    /**
+     * @return buffer with the positions of the current values, which is overwritten by {@link #next()}
+     */
+    int[] ordinals() {
+        return counter.digits();
+    }
+}
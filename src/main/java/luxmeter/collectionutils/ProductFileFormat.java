@@ -0,0 +1,66 @@
+package luxmeter.collectionutils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Binary layout shared by {@link ProductFileWriter} and {@link ProductFileReader}.<br/>
+ * Header: magic number (int), version (int), number of columns (int), size of each column's vector (int each),
+ * number of rows (long).<br/>
+ * Records: one per row in the order of {@link CartesianProduct}, each one consisting of the ordinals of the
+ * row's values. An ordinal takes one byte if its vector has at most 256 values, two bytes if it has at most
+ * 65536 values and four bytes otherwise. All values are big-endian, ordinals are unsigned.
+ */
+final class ProductFileFormat {
+    static final int MAGIC = 0x43505244;
+    static final int VERSION = 1;
+    // records are mapped in chunks of at most this many bytes
+    static final long CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private ProductFileFormat() {
+    }
+
+    static int headerSize(int columns) {
+        return 3 * Integer.BYTES + columns * Integer.BYTES + Long.BYTES;
+    }
+
+    static int width(int radix) {
+        if (radix <= 1 << 8) {
+            return 1;
+        }
+        return radix <= 1 << 16 ? 2 : 4;
+    }
+
+    static int recordSize(int[] radices) {
+        int recordSize = 0;
+        for (int radix : radices) {
+            recordSize += width(radix);
+        }
+        return recordSize;
+    }
+
+    /**
+     * @return number of records per chunk, so that a chunk never splits a record
+     */
+    static long recordsPerChunk(int recordSize) {
+        return Math.max(1, CHUNK_SIZE / Math.max(1, recordSize));
+    }
+
+    static void putOrdinal(ByteBuffer buffer, int width, int ordinal) {
+        if (width == 1) {
+            buffer.put((byte) ordinal);
+        }
+        else if (width == 2) {
+            buffer.putShort((short) ordinal);
+        }
+        else {
+            buffer.putInt(ordinal);
+        }
+    }
+
+    static int getOrdinal(ByteBuffer buffer, int index, int width) {
+        if (width == 1) {
+            return buffer.get(index) & 0xFF;
+        }
+        return width == 2 ? buffer.getShort(index) & 0xFFFF : buffer.getInt(index);
+    }
+}
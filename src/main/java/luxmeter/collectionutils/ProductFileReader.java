@@ -0,0 +1,147 @@
+package luxmeter.collectionutils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access by rank to a file written by {@link ProductFileWriter}.
+ * The records are memory-mapped, so reading a record doesn't load the file onto the heap.
+ * The ordinals can be turned back into values with the vectors the product was built from,
+ * e.g. {@code vector.get(reader.ordinalAt(rank, column))}.
+ */
+public final class ProductFileReader implements Closeable {
+    private final FileChannel channel;
+    private final int[] radices;
+    private final int[] offsets;
+    private final int[] widths;
+    private final int recordSize;
+    private final long recordsPerChunk;
+    private final long rows;
+    private final MappedByteBuffer[] chunks;
+
+    private ProductFileReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer prefix = read(3 * Integer.BYTES, 0);
+            if (prefix.getInt() != ProductFileFormat.MAGIC) {
+                throw new IOException(String.format("%s is not a product file", file));
+            }
+            int version = prefix.getInt();
+            if (version != ProductFileFormat.VERSION) {
+                throw new IOException(String.format("Unsupported version %s of product file %s", version, file));
+            }
+            int columns = prefix.getInt();
+            int headerSize = ProductFileFormat.headerSize(columns);
+            ByteBuffer header = read(headerSize - prefix.capacity(), prefix.capacity());
+            radices = new int[columns];
+            offsets = new int[columns];
+            widths = new int[columns];
+            int offset = 0;
+            for (int column = 0; column < columns; column++) {
+                radices[column] = header.getInt();
+                widths[column] = ProductFileFormat.width(radices[column]);
+                offsets[column] = offset;
+                offset += widths[column];
+            }
+            rows = header.getLong();
+            recordSize = offset;
+            recordsPerChunk = ProductFileFormat.recordsPerChunk(recordSize);
+
+            chunks = new MappedByteBuffer[(int) ((rows + recordsPerChunk - 1) / recordsPerChunk)];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                long firstRecord = chunk * recordsPerChunk;
+                long records = Math.min(recordsPerChunk, rows - firstRecord);
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        headerSize + firstRecord * recordSize, records * recordSize);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param file file written by {@link ProductFileWriter}
+     * @return reader which has to be closed after use
+     * @throws IOException if the file cannot be read or is not a product file
+     */
+    public static ProductFileReader open(Path file) throws IOException {
+        return new ProductFileReader(file);
+    }
+
+    /**
+     * @return number of records
+     */
+    public long size() {
+        return rows;
+    }
+
+    /**
+     * @return number of columns per record
+     */
+    public int columnCount() {
+        return radices.length;
+    }
+
+    /**
+     * @param column index of the column
+     * @return number of values of the column's vector
+     */
+    public int radix(int column) {
+        return radices[column];
+    }
+
+    /**
+     * @param rank position of the record
+     * @param column index of the column
+     * @return ordinal of the given column of the record
+     */
+    public int ordinalAt(long rank, int column) {
+        checkRank(rank);
+        MappedByteBuffer chunk = chunks[(int) (rank / recordsPerChunk)];
+        int recordOffset = (int) (rank % recordsPerChunk) * recordSize;
+        return ProductFileFormat.getOrdinal(chunk, recordOffset + offsets[column], widths[column]);
+    }
+
+    /**
+     * @param rank position of the record
+     * @return ordinals of all columns of the record
+     */
+    public int[] ordinalsAt(long rank) {
+        checkRank(rank);
+        MappedByteBuffer chunk = chunks[(int) (rank / recordsPerChunk)];
+        int recordOffset = (int) (rank % recordsPerChunk) * recordSize;
+        int[] ordinals = new int[radices.length];
+        for (int column = 0; column < ordinals.length; column++) {
+            ordinals[column] = ProductFileFormat.getOrdinal(chunk, recordOffset + offsets[column], widths[column]);
+        }
+        return ordinals;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkRank(long rank) {
+        if (rank < 0 || rank >= rows) {
+            throw new IndexOutOfBoundsException(String.format("Rank: %s, Size: %s", rank, rows));
+        }
+    }
+
+    private ByteBuffer read(int size, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of product file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
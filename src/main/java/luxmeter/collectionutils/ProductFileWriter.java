@@ -0,0 +1,69 @@
+package luxmeter.collectionutils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a {@link CartesianProduct} into a file as fixed-width records of ordinals,
+ * i.e. the positions of a row's values within their vectors. The file is written through memory-mapped chunks
+ * while enumerating the product, so neither the rows nor the file content are held on the heap.
+ * The file can be read by {@link ProductFileReader}, also from other processes.
+ * See {@link ProductFileFormat} for the layout.
+ */
+public final class ProductFileWriter {
+
+    private ProductFileWriter() {
+    }
+
+    /**
+     * @param product product to write
+     * @param file file to create or overwrite
+     * @return number of written records
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the number of rows exceeds a long
+     */
+    public static long write(CartesianProduct product, Path file) throws IOException {
+        long rows = product.longSize().orElseThrow(() -> new IllegalArgumentException(String.format(
+                "The product consists of %s rows and cannot be written into a file.", product.bigSize())));
+        int[] radices = product.radices();
+        int[] widths = new int[radices.length];
+        for (int i = 0; i < radices.length; i++) {
+            widths[i] = ProductFileFormat.width(radices[i]);
+        }
+        int recordSize = ProductFileFormat.recordSize(radices);
+        long recordsPerChunk = ProductFileFormat.recordsPerChunk(recordSize);
+        int headerSize = ProductFileFormat.headerSize(radices.length);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.putInt(ProductFileFormat.MAGIC).putInt(ProductFileFormat.VERSION).putInt(radices.length);
+            for (int radix : radices) {
+                header.putInt(radix);
+            }
+            header.putLong(rows);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, headerSize - header.remaining());
+            }
+
+            ProductCursor cursor = product.cursor();
+            for (long firstRecord = 0; firstRecord < rows; firstRecord += recordsPerChunk) {
+                long records = Math.min(recordsPerChunk, rows - firstRecord);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_WRITE,
+                        headerSize + firstRecord * recordSize, records * recordSize);
+                for (long record = 0; record < records && cursor.next(); record++) {
+                    for (int column = 0; column < widths.length; column++) {
+                        ProductFileFormat.putOrdinal(chunk, widths[column], cursor.ordinal(column));
+                    }
+                }
+                chunk.force();
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,102 @@
+package luxmeter.collectionutils;
+
+import java.util.*;
+
+/**
+ * Bijection between the rows of a {@link CartesianProduct} and their positions (ranks).
+ * A rank is a compact representation of a combination: the combination can be stored and compared as a long
+ * instead of a list of objects. Ranking needs a single hash lookup per column.
+ * If a value occurs more than once within a vector, its first occurrence is used.
+ * Example:
+ * <pre>{@code
+ * ProductIndex index = new CartesianProduct(products, zones).index();
+ * long rank = index.rank(Arrays.asList("TX", "B"));
+ * List<Object> combination = index.unrank(rank); // [TX, B]
+ * }</pre>
+ *
+ * @see CartesianProduct#index()
+ */
+public final class ProductIndex {
+    private final CartesianProduct product;
+    private final List<Map<Object, Integer>> ordinals;
+    private final long[] strides;
+    private final long size;
+
+    ProductIndex(CartesianProduct product, Object[][] vectors, long[] strides) {
+        this.size = product.longSize().orElseThrow(() -> new IllegalArgumentException(String.format(
+                "The product consists of %s rows, its ranks don't fit into a long.", product.bigSize())));
+        this.product = product;
+        this.strides = strides;
+        this.ordinals = new ArrayList<>(vectors.length);
+        for (Object[] vector : vectors) {
+            Map<Object, Integer> columnOrdinals = new HashMap<>(vector.length * 4 / 3 + 1);
+            for (int i = 0; i < vector.length; i++) {
+                columnOrdinals.putIfAbsent(vector[i], i);
+            }
+            ordinals.add(columnOrdinals);
+        }
+    }
+
+    /**
+     * @param tuple combination with one value per column
+     * @return position of the combination within the product
+     * @throws IllegalArgumentException if the combination is not part of the product
+     */
+    public long rank(List<?> tuple) {
+        long rank = rankOrNegative(tuple);
+        if (rank < 0) {
+            throw new IllegalArgumentException(String.format("%s is not part of the product", tuple));
+        }
+        return rank;
+    }
+
+    /**
+     * @param rank position within the product
+     * @return combination at the given position
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public List<Object> unrank(long rank) {
+        return product.get(rank);
+    }
+
+    /**
+     * @param tuple combination with one value per column
+     * @return true if the combination is part of the product
+     */
+    public boolean contains(List<?> tuple) {
+        return rankOrNegative(tuple) >= 0;
+    }
+
+    /**
+     * @param column index of the column
+     * @param value value of the column
+     * @return position of the value within the vector of the given column or -1 if it isn't part of it
+     */
+    public int ordinal(int column, Object value) {
+        return ordinals.get(column).getOrDefault(value, -1);
+    }
+
+    /**
+     * @return number of combinations
+     */
+    public long size() {
+        return size;
+    }
+
+    private long rankOrNegative(List<?> tuple) {
+        if (tuple.size() != ordinals.size() || size == 0) {
+            return -1;
+        }
+        long rank = 0;
+        int column = 0;
+        for (Object value : tuple) {
+            Integer ordinal = ordinals.get(column).get(value);
+            if (ordinal == null) {
+                return -1;
+            }
+            rank += ordinal * strides[column];
+            column++;
+        }
+        return rank;
+    }
+}
@@ -0,0 +1,80 @@
+package luxmeter.collectionutils;
+
+import com.google.common.collect.AbstractIterator;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Cartesian product enumerated depth-first, which skips the whole sub-tree of a partial row
+ * as soon as a constraint on that partial row fails.
+ * @see ProductBuilder
+ */
+final class PrunedProduct implements Iterable<List<Object>> {
+    private final Object[][] vectors;
+    // constraints to check once the partial row reaches the column of the same index
+    private final List<List<Predicate<List<Object>>>> constraints;
+
+    PrunedProduct(List<Collection<?>> vectors, List<List<Predicate<List<Object>>>> constraints) {
+        this.vectors = vectors.stream().map(Collection::toArray).toArray(Object[][]::new);
+        this.constraints = constraints;
+    }
+
+    @Override
+    public Iterator<List<Object>> iterator() {
+        return new AbstractIterator<List<Object>>() {
+            private final Object[] row = new Object[vectors.length];
+            private final List<List<Object>> prefixes = createPrefixes(row);
+            // index of the current value per column, -1 if the column hasn't been visited yet
+            private final int[] digits = unvisited(vectors.length);
+            private int depth = vectors.length == 0 ? -1 : 0;
+
+            @Override
+            protected List<Object> computeNext() {
+                while (depth >= 0) {
+                    if (++digits[depth] >= vectors[depth].length) {
+                        // sub-tree exhausted, backtrack
+                        depth--;
+                        continue;
+                    }
+                    row[depth] = vectors[depth][digits[depth]];
+                    if (!satisfiesConstraints(depth, prefixes.get(depth))) {
+                        continue;
+                    }
+                    if (depth == vectors.length - 1) {
+                        return new ArrayList<>(Arrays.asList(row));
+                    }
+                    digits[++depth] = -1;
+                }
+                return endOfData();
+            }
+        };
+    }
+
+    private boolean satisfiesConstraints(int depth, List<Object> prefix) {
+        for (Predicate<List<Object>> constraint : constraints.get(depth)) {
+            if (!constraint.test(prefix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] unvisited(int columns) {
+        int[] digits = new int[columns];
+        Arrays.fill(digits, -1);
+        return digits;
+    }
+
+    /**
+     * @return read-only views on the partial rows of each length
+     */
+    private static List<List<Object>> createPrefixes(Object[] row) {
+        List<Object> fullRow = Arrays.asList(row);
+        List<List<Object>> prefixes = new ArrayList<>(row.length);
+        for (int i = 0; i < row.length; i++) {
+            prefixes.add(Collections.unmodifiableList(fullRow.subList(0, i + 1)));
+        }
+        return prefixes;
+    }
+}
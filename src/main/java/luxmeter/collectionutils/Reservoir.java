@@ -0,0 +1,85 @@
+package luxmeter.collectionutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Uniform random sample of at most k elements out of all elements added so far (reservoir sampling).
+ * Two reservoirs filled from disjoint parts of the same source can be merged into a uniform sample of the union.
+ */
+final class Reservoir<T> {
+    private final int k;
+    private final Random random;
+    private final List<T> sample;
+    private long seen;
+
+    Reservoir(int k, Random random) {
+        if (k < 0) {
+            throw new IllegalArgumentException(String.format("Sample size must not be negative: %s", k));
+        }
+        this.k = k;
+        this.random = random;
+        this.sample = new ArrayList<>(Math.min(k, 1024));
+    }
+
+    void add(T element) {
+        seen++;
+        if (sample.size() < k) {
+            sample.add(element);
+            return;
+        }
+        long index = nextLong(seen);
+        if (index < k) {
+            sample.set((int) index, element);
+        }
+    }
+
+    /**
+     * Draws the merged sample without replacement from both samples.
+     * Each draw picks a side with the probability of its remaining share of the seen elements.
+     */
+    Reservoir<T> merge(Reservoir<T> other) {
+        Reservoir<T> merged = new Reservoir<>(k, random);
+        merged.seen = seen + other.seen;
+        List<T> mine = new ArrayList<>(sample);
+        List<T> others = new ArrayList<>(other.sample);
+        long myRemaining = seen;
+        long otherRemaining = other.seen;
+        while (merged.sample.size() < k && (!mine.isEmpty() || !others.isEmpty())) {
+            boolean takeMine = nextLong(myRemaining + otherRemaining) < myRemaining;
+            List<T> source = takeMine ? mine : others;
+            merged.sample.add(removeRandom(source));
+            if (takeMine) {
+                myRemaining--;
+            }
+            else {
+                otherRemaining--;
+            }
+        }
+        return merged;
+    }
+
+    List<T> toList() {
+        return new ArrayList<>(sample);
+    }
+
+    private T removeRandom(List<T> list) {
+        int index = random.nextInt(list.size());
+        T element = list.get(index);
+        // order within a sample is irrelevant, so swap with the last one instead of shifting
+        list.set(index, list.get(list.size() - 1));
+        list.remove(list.size() - 1);
+        return element;
+    }
+
+    /**
+     * @return random number in [0, bound)
+     */
+    private long nextLong(long bound) {
+        if (bound <= Integer.MAX_VALUE) {
+            return random.nextInt((int) bound);
+        }
+        return (long) (random.nextDouble() * bound);
+    }
+}
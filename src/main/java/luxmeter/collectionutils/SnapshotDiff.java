@@ -0,0 +1,185 @@
+package luxmeter.collectionutils;
+
+import com.google.common.collect.AbstractIterator;
+import luxmeter.collectionutils.CollectionSortUtils.ComposedKeyProvider;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+
+import static luxmeter.collectionutils.CollectionSortUtils.byKey;
+
+/**
+ * Computes the differences between two snapshots lazily.
+ * With {@link JoinStrategy#HASH} the old snapshot is indexed by its keys and the new one is streamed.
+ * With {@link JoinStrategy#SORT_MERGE} both snapshots are streamed in a single pass.
+ * The keys have to be unique within each snapshot.
+ */
+final class SnapshotDiff<T> implements Iterable<DiffEntry<T>> {
+    private static final Comparator<Comparable[]> KEY_COMPARATOR =
+            byKey(key -> key, SortOrder.ASC, NullOrder.NULL_LAST);
+    // marks keys of the old snapshot which have been matched already
+    private static final Object MATCHED = new Object();
+    // stands in for null old elements, so that a missing key can be told apart from a null element
+    private static final Object NULL_ELEMENT = new Object();
+
+    private final Iterable<T> oldElements;
+    private final Iterable<T> newElements;
+    private final ComposedKeyProvider<T> keyProvider;
+    private final BiPredicate<T, T> equality;
+    private final JoinStrategy strategy;
+
+    SnapshotDiff(Iterable<T> oldElements, Iterable<T> newElements,
+                 ComposedKeyProvider<T> keyProvider, BiPredicate<T, T> equality, JoinStrategy strategy) {
+        this.oldElements = oldElements;
+        this.newElements = newElements;
+        this.keyProvider = keyProvider;
+        this.equality = equality;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public Iterator<DiffEntry<T>> iterator() {
+        return strategy == JoinStrategy.SORT_MERGE ? new MergeIterator() : new HashIterator();
+    }
+
+    private static IllegalArgumentException duplicateKey(Object key, String snapshot) {
+        return new IllegalArgumentException(String.format("Key %s is not unique within the %s snapshot", key, snapshot));
+    }
+
+    private DiffEntry<T> compare(T oldElement, T newElement) {
+        return equality.test(oldElement, newElement) ? null : new DiffEntry<>(DiffType.CHANGED, oldElement, newElement);
+    }
+
+    private final class HashIterator extends AbstractIterator<DiffEntry<T>> {
+        // old elements by key; MATCHED once a new element with the same key has been seen
+        private final Map<ComposedKey, Object> index = new LinkedHashMap<>();
+        private final Iterator<T> newIterator = newElements.iterator();
+        private Iterator<Map.Entry<ComposedKey, Object>> unmatched;
+
+        HashIterator() {
+            for (T oldElement : oldElements) {
+                ComposedKey key = ComposedKey.wrap(keyProvider.apply(oldElement));
+                if (index.put(key, oldElement == null ? NULL_ELEMENT : oldElement) != null) {
+                    throw duplicateKey(key, "old");
+                }
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected DiffEntry<T> computeNext() {
+            while (newIterator.hasNext()) {
+                T newElement = newIterator.next();
+                ComposedKey key = ComposedKey.wrap(keyProvider.apply(newElement));
+                Object oldElement = index.put(key, MATCHED);
+                if (oldElement == MATCHED) {
+                    throw duplicateKey(key, "new");
+                }
+                DiffEntry<T> entry = oldElement == null
+                        ? new DiffEntry<>(DiffType.ADDED, null, newElement)
+                        : compare(unwrap(oldElement), newElement);
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            if (unmatched == null) {
+                unmatched = index.entrySet().iterator();
+            }
+            while (unmatched.hasNext()) {
+                Object oldElement = unmatched.next().getValue();
+                if (oldElement != MATCHED) {
+                    return new DiffEntry<>(DiffType.REMOVED, unwrap(oldElement), null);
+                }
+            }
+            return endOfData();
+        }
+
+        @SuppressWarnings("unchecked")
+        private T unwrap(Object oldElement) {
+            return oldElement == NULL_ELEMENT ? null : (T) oldElement;
+        }
+    }
+
+    private final class MergeIterator extends AbstractIterator<DiffEntry<T>> {
+        private final Cursor oldCursor = new Cursor(oldElements.iterator(), "old");
+        private final Cursor newCursor = new Cursor(newElements.iterator(), "new");
+
+        @Override
+        protected DiffEntry<T> computeNext() {
+            while (oldCursor.hasCurrent() || newCursor.hasCurrent()) {
+                int cmp;
+                if (!oldCursor.hasCurrent()) {
+                    cmp = 1;
+                }
+                else if (!newCursor.hasCurrent()) {
+                    cmp = -1;
+                }
+                else {
+                    cmp = KEY_COMPARATOR.compare(oldCursor.key, newCursor.key);
+                }
+
+                if (cmp < 0) {
+                    return new DiffEntry<>(DiffType.REMOVED, oldCursor.advance(), null);
+                }
+                if (cmp > 0) {
+                    return new DiffEntry<>(DiffType.ADDED, null, newCursor.advance());
+                }
+                DiffEntry<T> entry = compare(oldCursor.advance(), newCursor.advance());
+                if (entry != null) {
+                    return entry;
+                }
+            }
+            return endOfData();
+        }
+    }
+
+    /**
+     * Position within a sorted snapshot. Verifies that the keys are strictly ascending.
+     */
+    private final class Cursor {
+        private final Iterator<T> iterator;
+        private final String snapshot;
+        private T current;
+        private Comparable[] key;
+        private boolean hasCurrent;
+
+        Cursor(Iterator<T> iterator, String snapshot) {
+            this.iterator = iterator;
+            this.snapshot = snapshot;
+            advance();
+        }
+
+        boolean hasCurrent() {
+            return hasCurrent;
+        }
+
+        /**
+         * @return the current element before moving on to the next one
+         */
+        T advance() {
+            T previous = current;
+            Comparable[] previousKey = key;
+            hasCurrent = iterator.hasNext();
+            if (hasCurrent) {
+                current = iterator.next();
+                key = keyProvider.apply(current);
+                if (previousKey != null) {
+                    int cmp = KEY_COMPARATOR.compare(previousKey, key);
+                    if (cmp == 0) {
+                        throw duplicateKey(Arrays.toString(key), snapshot);
+                    }
+                    if (cmp > 0) {
+                        throw new IllegalArgumentException(String.format(
+                                "The %s snapshot is not sorted by its keys: %s comes after %s",
+                                snapshot, Arrays.toString(key), Arrays.toString(previousKey)));
+                    }
+                }
+            }
+            else {
+                current = null;
+                key = null;
+            }
+            return previous;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package luxmeter.collectionutils;
+
+import com.google.common.collect.AbstractIterator;
+import luxmeter.collectionutils.CollectionSortUtils.ComposedKeyProvider;
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.*;
+
+import static luxmeter.collectionutils.CollectionSortUtils.byKey;
+
+/**
+ * Sort-merge join over two iterables which are already sorted by their keys
+ * (ascending, null values last). Both sides are streamed, only the group of right elements
+ * sharing the current key is buffered.
+ * For left and anti joins the unmatched left elements are emitted as pairs with a {@code null} right side.
+ */
+final class SortMergeJoin<L, R> implements Iterable<Pair<L, R>> {
+    private static final Comparator<Comparable[]> KEY_COMPARATOR =
+            byKey(key -> key, SortOrder.ASC, NullOrder.NULL_LAST);
+
+    private final Iterable<L> left;
+    private final Iterable<R> right;
+    private final ComposedKeyProvider<L> leftKeyProvider;
+    private final ComposedKeyProvider<R> rightKeyProvider;
+    private final JoinType joinType;
+
+    SortMergeJoin(Iterable<L> left, Iterable<R> right,
+                  ComposedKeyProvider<L> leftKeyProvider, ComposedKeyProvider<R> rightKeyProvider, JoinType joinType) {
+        this.left = left;
+        this.right = right;
+        this.leftKeyProvider = leftKeyProvider;
+        this.rightKeyProvider = rightKeyProvider;
+        this.joinType = joinType;
+    }
+
+    @Override
+    public Iterator<Pair<L, R>> iterator() {
+        return new MergeIterator();
+    }
+
+    private final class MergeIterator extends AbstractIterator<Pair<L, R>> {
+        private final Iterator<L> leftIterator = left.iterator();
+        private final Iterator<R> rightIterator = right.iterator();
+
+        private R peekedRight;
+        private Comparable[] peekedRightKey;
+        private boolean rightPeeked;
+
+        private List<R> group = Collections.emptyList();
+        private Comparable[] groupKey;
+
+        private L current;
+        private Iterator<R> matches = Collections.emptyIterator();
+
+        @Override
+        protected Pair<L, R> computeNext() {
+            while (true) {
+                if (matches.hasNext()) {
+                    return Pair.of(current, matches.next());
+                }
+                if (!leftIterator.hasNext()) {
+                    return endOfData();
+                }
+                current = leftIterator.next();
+                List<R> found = findGroup(leftKeyProvider.apply(current));
+                if (found.isEmpty()) {
+                    if (joinType != JoinType.INNER) {
+                        return Pair.of(current, null);
+                    }
+                }
+                else if (joinType != JoinType.ANTI) {
+                    matches = found.iterator();
+                }
+            }
+        }
+
+        /**
+         * Advances the right side up to the given key and buffers all right elements having that key.
+         * The buffered group is reused as long as the left side produces the same key.
+         */
+        private List<R> findGroup(Comparable[] key) {
+            if (groupKey != null && KEY_COMPARATOR.compare(groupKey, key) == 0) {
+                return group;
+            }
+            group = new ArrayList<>();
+            groupKey = key;
+            while (peekRight() && KEY_COMPARATOR.compare(peekedRightKey, key) < 0) {
+                rightPeeked = false;
+            }
+            while (peekRight() && KEY_COMPARATOR.compare(peekedRightKey, key) == 0) {
+                group.add(peekedRight);
+                rightPeeked = false;
+            }
+            return group;
+        }
+
+        private boolean peekRight() {
+            if (!rightPeeked && rightIterator.hasNext()) {
+                peekedRight = rightIterator.next();
+                peekedRightKey = rightKeyProvider.apply(peekedRight);
+                rightPeeked = true;
+            }
+            return rightPeeked;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package luxmeter.collectionutils;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy cartesian product whose rows are built by a mapper directly from the vectors,
+ * without an intermediate list per row. The vectors can be object or primitive arrays.
+ * As with {@link CartesianProduct} the last vector changes fastest.
+ */
+final class TypedProduct<R> implements Iterable<R> {
+    /**
+     * Builds a row from the positions of its values within the vectors.
+     */
+    @FunctionalInterface
+    interface RowMapper<R> {
+        R map(Object[] vectors, int[] digits);
+    }
+
+    private final Object[] vectors;
+    private final int[] radices;
+    private final RowMapper<R> rowMapper;
+    private final boolean empty;
+
+    TypedProduct(Object[] vectors, int[] radices, RowMapper<R> rowMapper) {
+        this.vectors = vectors;
+        this.radices = radices;
+        this.rowMapper = rowMapper;
+        boolean anyVectorEmpty = false;
+        for (int radix : radices) {
+            anyVectorEmpty |= radix == 0;
+        }
+        this.empty = radices.length == 0 || anyVectorEmpty;
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        return new Iterator<R>() {
+            private final MixedRadixCounter counter = new MixedRadixCounter(radices);
+            private boolean exhausted = empty;
+
+            @Override
+            public boolean hasNext() {
+                return !exhausted;
+            }
+
+            @Override
+            public R next() {
+                if (exhausted) {
+                    throw new NoSuchElementException();
+                }
+                R row = rowMapper.map(vectors, counter.digits());
+                exhausted = counter.increment() < 0;
+                return row;
+            }
+        };
+    }
+}
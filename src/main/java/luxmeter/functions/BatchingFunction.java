@@ -0,0 +1,120 @@
+package luxmeter.functions;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * Collects the keys of single calls and dispatches them as one bulk call, either when the batch is full
+ * or when the first key of the batch has waited for the maximum delay.
+ * Equal keys within a batch share the same result.
+ */
+final class BatchingFunction<K, V> implements Function<K, CompletableFuture<V>> {
+    // only triggers flushes, the bulk calls run on the executor
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("batching-function-timer-%d").build());
+
+    private final Function<List<K>, Map<K, V>> bulkFunction;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> scheduledFlush;
+    // incremented whenever a batch is taken, so that a timer firing for an already dispatched batch is ignored
+    private long generation;
+
+    BatchingFunction(Function<List<K>, Map<K, V>> bulkFunction, int maxBatchSize, Duration maxDelay,
+                     Executor executor) {
+        this(bulkFunction, maxBatchSize, maxDelay, executor, TIMER);
+    }
+
+    BatchingFunction(Function<List<K>, Map<K, V>> bulkFunction, int maxBatchSize, Duration maxDelay,
+                     Executor executor, ScheduledExecutorService timer) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException(String.format("Batch size must be positive: %s", maxBatchSize));
+        }
+        if (maxDelay.isNegative()) {
+            throw new IllegalArgumentException(String.format("Delay must not be negative: %s", maxDelay));
+        }
+        this.bulkFunction = bulkFunction;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.executor = executor;
+        this.timer = timer;
+    }
+
+    @Override
+    public CompletableFuture<V> apply(K key) {
+        Map<K, CompletableFuture<V>> batch = null;
+        CompletableFuture<V> result;
+        synchronized (this) {
+            result = pending.get(key);
+            if (result != null) {
+                return result;
+            }
+            result = new CompletableFuture<>();
+            pending.put(key, result);
+            if (pending.size() >= maxBatchSize) {
+                batch = takePending();
+            }
+            else if (pending.size() == 1) {
+                long scheduledGeneration = generation;
+                scheduledFlush = timer.schedule(() -> flush(scheduledGeneration), maxDelayNanos,
+                        TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch != null) {
+            dispatch(batch);
+        }
+        return result;
+    }
+
+    /**
+     * Dispatches the pending keys without waiting for the batch to be full,
+     * unless the batch the flush was scheduled for has already been taken.
+     */
+    private void flush(long scheduledGeneration) {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            if (scheduledGeneration != generation || pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        generation++;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        try {
+            executor.execute(() -> {
+                try {
+                    Map<K, V> results = bulkFunction.apply(new ArrayList<>(batch.keySet()));
+                    batch.forEach((key, result) -> result.complete(results.get(key)));
+                } catch (Throwable e) {
+                    batch.values().forEach(result -> result.completeExceptionally(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            batch.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package luxmeter.functions;
+
+public interface Function5<A, B, C, D, E, R> {
+    R apply(A a, B b, C c, D d, E e);
+}
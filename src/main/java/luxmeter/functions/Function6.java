@@ -0,0 +1,5 @@
+package luxmeter.functions;
+
+public interface Function6<A, B, C, D, E, F, R> {
+    R apply(A a, B b, C c, D d, E e, F f);
+}
@@ -0,0 +1,35 @@
+package luxmeter.functions;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mutable metrics of a single instrumented function. Recording neither locks nor allocates.
+ */
+final class FunctionMetrics {
+    private final String name;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    FunctionMetrics(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, boolean failed) {
+        invocations.increment();
+        if (failed) {
+            errors.increment();
+        }
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        latencies.record(nanos);
+    }
+
+    FunctionMetricsSnapshot snapshot() {
+        return new FunctionMetricsSnapshot(name, invocations.sum(), errors.sum(), totalNanos.sum(), maxNanos.get(),
+                latencies.counts());
+    }
+}
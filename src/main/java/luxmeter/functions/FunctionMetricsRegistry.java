@@ -0,0 +1,56 @@
+package luxmeter.functions;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Metrics of instrumented functions by their names. Functions instrumented with the same name share their metrics.
+ *
+ * @see Functions#instrumented(String, java.util.function.Function)
+ */
+public final class FunctionMetricsRegistry {
+    private static final FunctionMetricsRegistry DEFAULT = new FunctionMetricsRegistry();
+
+    private final ConcurrentMap<String, FunctionMetrics> metrics = new ConcurrentHashMap<>();
+
+    private FunctionMetricsRegistry() {
+    }
+
+    public static FunctionMetricsRegistry create() {
+        return new FunctionMetricsRegistry();
+    }
+
+    /**
+     * @return registry used by functions instrumented without an explicit registry
+     */
+    public static FunctionMetricsRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @param name name of an instrumented function
+     * @return current metrics of the function or an empty optional if no function has been instrumented with the name
+     */
+    public Optional<FunctionMetricsSnapshot> snapshot(String name) {
+        return Optional.ofNullable(metrics.get(name)).map(FunctionMetrics::snapshot);
+    }
+
+    /**
+     * @return current metrics of all instrumented functions ordered by name
+     */
+    public List<FunctionMetricsSnapshot> snapshots() {
+        return metrics.values().stream()
+                .map(FunctionMetrics::snapshot)
+                .sorted(Comparator.comparing(FunctionMetricsSnapshot::getName))
+                .collect(toList());
+    }
+
+    FunctionMetrics metricsOf(String name) {
+        return metrics.computeIfAbsent(name, FunctionMetrics::new);
+    }
+}
@@ -0,0 +1,66 @@
+package luxmeter.functions;
+
+/**
+ * Metrics of an instrumented function at the time the snapshot was taken.
+ * Values recorded concurrently with taking the snapshot may be reflected only partially.
+ *
+ * @see FunctionMetricsRegistry
+ */
+public final class FunctionMetricsSnapshot {
+    private final String name;
+    private final long invocationCount;
+    private final long errorCount;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long[] latencyCounts;
+
+    FunctionMetricsSnapshot(String name, long invocationCount, long errorCount, long totalNanos, long maxNanos,
+                            long[] latencyCounts) {
+        this.name = name;
+        this.invocationCount = invocationCount;
+        this.errorCount = errorCount;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.latencyCounts = latencyCounts;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of invocations including the failed ones
+     */
+    public long getInvocationCount() {
+        return invocationCount;
+    }
+
+    /**
+     * @return number of invocations which have thrown an exception
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    public double getMeanNanos() {
+        return invocationCount == 0 ? 0 : (double) totalNanos / invocationCount;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @param percentile percentile in [0, 100], e.g. 99 for the 99th percentile
+     * @return latency which the given percentage of invocations didn't exceed, accurate to 1/8 of the value
+     */
+    public long getLatencyNanos(double percentile) {
+        return LatencyHistogram.valueAtPercentile(latencyCounts, percentile);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: invocations=%s, errors=%s, mean=%.0fns, p50=%sns, p99=%sns, max=%sns",
+                name, invocationCount, errorCount, getMeanNanos(), getLatencyNanos(50), getLatencyNanos(99), maxNanos);
+    }
+}
@@ -1,71 +1,424 @@
 package luxmeter.functions;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Collection;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
-import java.util.function.BiFunction;
-import java.util.function.Supplier;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.util.stream.Stream;
-
-import static java.util.stream.Collectors.toList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.*;
 
 public abstract class Functions {
-    private static final Logger LOGGER = Logger.getLogger(Functions.class.getName());
+    private static final MethodHandle APPLY2 = findApply(BiFunction.class, 2);
+    private static final MethodHandle APPLY3 = findApply(Function3.class, 3);
 
     private Functions() {
 
     }
 
+    /**
+     * @return counter starting at 0 which may be shared between threads
+     * @see #createIntCounter() for a counter without boxing
+     */
     public static Supplier<Integer> createCounter() {
-        return new Supplier<Integer>() {
+        AtomicInteger count = new AtomicInteger();
+        return count::getAndIncrement;
+    }
+
+    /**
+     * @return counter starting at 0 which must not be shared between threads
+     */
+    public static IntSupplier createIntCounter() {
+        return new IntSupplier() {
             private int count;
             @Override
-            public Integer get() {
+            public int getAsInt() {
+                return count++;
+            }
+        };
+    }
+
+    /**
+     * @return counter starting at 0 which must not be shared between threads
+     */
+    public static LongSupplier createLongCounter() {
+        return new LongSupplier() {
+            private long count;
+            @Override
+            public long getAsLong() {
                 return count++;
             }
         };
     }
 
+    /**
+     * @param start first value
+     * @return sequence which returns each value exactly once, also if shared between threads
+     */
+    public static LongSupplier createSequence(long start) {
+        AtomicLong next = new AtomicLong(start);
+        return next::getAndIncrement;
+    }
+
+    /**
+     * Counts across threads with little contention, e.g. for statistics.
+     * Unlike {@link #createSequence(long)} it doesn't hand out unique values.
+     * @return counter starting at 0
+     */
+    public static LongAdder createStripedCounter() {
+        return new LongAdder();
+    }
+
     public static <A, B, C, R> PartialFunction<R> partial(Function3<A, B, C, R> function, Argument<A> a, Argument<B> b, Argument<C> c) {
-        return createPartialFunction(function, a, b, c);
+        return createPartialFunction(APPLY3.bindTo(function), a, b, c);
     }
 
     public static <A, B, R> PartialFunction<R> partial(BiFunction<A, B, R> function, Argument<A> a, Argument<B> b) {
-        return createPartialFunction(function, a, b);
+        return createPartialFunction(APPLY2.bindTo(function), a, b);
+    }
+
+    public static <A, B, R> Function<B, R> bind1(BiFunction<A, B, R> function, A a) {
+        return b -> function.apply(a, b);
+    }
+
+    public static <A, B, R> Function<A, R> bind2(BiFunction<A, B, R> function, B b) {
+        return a -> function.apply(a, b);
+    }
+
+    public static <A, B, C, R> BiFunction<B, C, R> bind1(Function3<A, B, C, R> function, A a) {
+        return (b, c) -> function.apply(a, b, c);
+    }
+
+    public static <A, B, C, R> BiFunction<A, C, R> bind2(Function3<A, B, C, R> function, B b) {
+        return (a, c) -> function.apply(a, b, c);
+    }
+
+    public static <A, B, C, R> BiFunction<A, B, R> bind3(Function3<A, B, C, R> function, C c) {
+        return (a, b) -> function.apply(a, b, c);
+    }
+
+    public static <A, B, C, D, R> Function3<B, C, D, R> bind1(Function4<A, B, C, D, R> function, A a) {
+        return (b, c, d) -> function.apply(a, b, c, d);
+    }
+
+    public static <A, B, C, D, R> Function3<A, C, D, R> bind2(Function4<A, B, C, D, R> function, B b) {
+        return (a, c, d) -> function.apply(a, b, c, d);
+    }
+
+    public static <A, B, C, D, R> Function3<A, B, D, R> bind3(Function4<A, B, C, D, R> function, C c) {
+        return (a, b, d) -> function.apply(a, b, c, d);
+    }
+
+    public static <A, B, C, D, R> Function3<A, B, C, R> bind4(Function4<A, B, C, D, R> function, D d) {
+        return (a, b, c) -> function.apply(a, b, c, d);
+    }
+
+    public static <A, B, C, D, E, R> Function4<B, C, D, E, R> bind1(Function5<A, B, C, D, E, R> function, A a) {
+        return (b, c, d, e) -> function.apply(a, b, c, d, e);
+    }
+
+    public static <A, B, C, D, E, R> Function4<A, C, D, E, R> bind2(Function5<A, B, C, D, E, R> function, B b) {
+        return (a, c, d, e) -> function.apply(a, b, c, d, e);
+    }
+
+    public static <A, B, C, D, E, R> Function4<A, B, D, E, R> bind3(Function5<A, B, C, D, E, R> function, C c) {
+        return (a, b, d, e) -> function.apply(a, b, c, d, e);
+    }
+
+    public static <A, B, C, D, E, R> Function4<A, B, C, E, R> bind4(Function5<A, B, C, D, E, R> function, D d) {
+        return (a, b, c, e) -> function.apply(a, b, c, d, e);
+    }
+
+    public static <A, B, C, D, E, R> Function4<A, B, C, D, R> bind5(Function5<A, B, C, D, E, R> function, E e) {
+        return (a, b, c, d) -> function.apply(a, b, c, d, e);
+    }
+
+    public static <A, B, C, D, E, F, R> Function5<B, C, D, E, F, R> bind1(Function6<A, B, C, D, E, F, R> function, A a) {
+        return (b, c, d, e, f) -> function.apply(a, b, c, d, e, f);
+    }
+
+    public static <A, B, C, D, E, F, R> Function5<A, C, D, E, F, R> bind2(Function6<A, B, C, D, E, F, R> function, B b) {
+        return (a, c, d, e, f) -> function.apply(a, b, c, d, e, f);
+    }
+
+    public static <A, B, C, D, E, F, R> Function5<A, B, D, E, F, R> bind3(Function6<A, B, C, D, E, F, R> function, C c) {
+        return (a, b, d, e, f) -> function.apply(a, b, c, d, e, f);
+    }
+
+    public static <A, B, C, D, E, F, R> Function5<A, B, C, E, F, R> bind4(Function6<A, B, C, D, E, F, R> function, D d) {
+        return (a, b, c, e, f) -> function.apply(a, b, c, d, e, f);
+    }
+
+    public static <A, B, C, D, E, F, R> Function5<A, B, C, D, F, R> bind5(Function6<A, B, C, D, E, F, R> function, E e) {
+        return (a, b, c, d, f) -> function.apply(a, b, c, d, e, f);
+    }
+
+    public static <A, B, C, D, E, F, R> Function5<A, B, C, D, E, R> bind6(Function6<A, B, C, D, E, F, R> function, F f) {
+        return (a, b, c, d, e) -> function.apply(a, b, c, d, e, f);
+    }
+
+    public static IntUnaryOperator bindInt1(IntBinaryOperator operator, int left) {
+        return right -> operator.applyAsInt(left, right);
+    }
+
+    public static IntUnaryOperator bindInt2(IntBinaryOperator operator, int right) {
+        return left -> operator.applyAsInt(left, right);
+    }
+
+    public static LongUnaryOperator bindLong1(LongBinaryOperator operator, long left) {
+        return right -> operator.applyAsLong(left, right);
+    }
+
+    public static LongUnaryOperator bindLong2(LongBinaryOperator operator, long right) {
+        return left -> operator.applyAsLong(left, right);
+    }
+
+    public static DoubleUnaryOperator bindDouble1(DoubleBinaryOperator operator, double left) {
+        return right -> operator.applyAsDouble(left, right);
+    }
+
+    public static DoubleUnaryOperator bindDouble2(DoubleBinaryOperator operator, double right) {
+        return left -> operator.applyAsDouble(left, right);
+    }
+
+    public static <T, R> MemoizedFunction<T, R> memoize(Function<T, R> function) {
+        return memoize(function, MemoizationOptions.create());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T, R> MemoizedFunction<T, R> memoize(Function<T, R> function, MemoizationOptions options) {
+        Memoizer<R> memoizer = new Memoizer<>(options, arguments -> function.apply((T) arguments[0]));
+        return new MemoizedFunction<T, R>() {
+            @Override
+            public R apply(T t) {
+                return memoizer.apply(t);
+            }
+
+            @Override
+            public MemoizationStats stats() {
+                return memoizer.stats();
+            }
+
+            @Override
+            public void invalidateAll() {
+                memoizer.invalidateAll();
+            }
+        };
+    }
+
+    public static <A, B, R> MemoizedBiFunction<A, B, R> memoize(BiFunction<A, B, R> function) {
+        return memoize(function, MemoizationOptions.create());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, R> MemoizedBiFunction<A, B, R> memoize(BiFunction<A, B, R> function, MemoizationOptions options) {
+        Memoizer<R> memoizer = new Memoizer<>(options, arguments -> function.apply((A) arguments[0], (B) arguments[1]));
+        return new MemoizedBiFunction<A, B, R>() {
+            @Override
+            public R apply(A a, B b) {
+                return memoizer.apply(a, b);
+            }
+
+            @Override
+            public MemoizationStats stats() {
+                return memoizer.stats();
+            }
+
+            @Override
+            public void invalidateAll() {
+                memoizer.invalidateAll();
+            }
+        };
+    }
+
+    public static <A, B, C, R> MemoizedFunction3<A, B, C, R> memoize(Function3<A, B, C, R> function) {
+        return memoize(function, MemoizationOptions.create());
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, C, R> MemoizedFunction3<A, B, C, R> memoize(Function3<A, B, C, R> function, MemoizationOptions options) {
+        Memoizer<R> memoizer = new Memoizer<>(options, arguments -> function.apply((A) arguments[0], (B) arguments[1], (C) arguments[2]));
+        return new MemoizedFunction3<A, B, C, R>() {
+            @Override
+            public R apply(A a, B b, C c) {
+                return memoizer.apply(a, b, c);
+            }
+
+            @Override
+            public MemoizationStats stats() {
+                return memoizer.stats();
+            }
+
+            @Override
+            public void invalidateAll() {
+                memoizer.invalidateAll();
+            }
+        };
+    }
+
+    /**
+     * Coalesces single calls into bulk calls, e.g. to look up reference data in one query instead of one per key.
+     * Keys are collected until maxBatchSize distinct keys are pending or the first of them has waited for maxDelay.
+     * The bulk function runs on the common fork-join pool. A key missing in its result is completed with null.
+     * @param bulkFunction function computing the results of a batch of distinct keys
+     * @return function returning the future result of a single key
+     */
+    public static <K, V> Function<K, CompletableFuture<V>> batching(Function<List<K>, Map<K, V>> bulkFunction,
+                                                                   int maxBatchSize, Duration maxDelay) {
+        return batching(bulkFunction, maxBatchSize, maxDelay, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * As {@link #batching(Function, int, Duration)} but runs the bulk function on the given executor.
+     * @param bulkFunction function computing the results of a batch of distinct keys
+     * @param maxBatchSize number of distinct keys which are dispatched at once
+     * @param maxDelay time the first key of a batch waits at most for further keys
+     * @param executor executor running the bulk function
+     * @return function returning the future result of a single key
+     */
+    public static <K, V> Function<K, CompletableFuture<V>> batching(Function<List<K>, Map<K, V>> bulkFunction,
+                                                                   int maxBatchSize, Duration maxDelay,
+                                                                   Executor executor) {
+        return new BatchingFunction<>(bulkFunction, maxBatchSize, maxDelay, executor);
+    }
+
+    /**
+     * Records the invocations, errors and latencies of the function under the given name.
+     * @see FunctionMetricsRegistry#getDefault()
+     */
+    public static <T, R> Function<T, R> instrumented(String name, Function<T, R> function) {
+        return instrumented(FunctionMetricsRegistry.getDefault(), name, function);
+    }
+
+    public static <T, R> Function<T, R> instrumented(FunctionMetricsRegistry registry, String name, Function<T, R> function) {
+        FunctionMetrics metrics = registry.metricsOf(name);
+        // each overload times the call inline, a shared helper taking a lambda would allocate on every call
+        return t -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                R result = function.apply(t);
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed);
+            }
+        };
+    }
+
+    public static <A, B, R> BiFunction<A, B, R> instrumented(String name, BiFunction<A, B, R> function) {
+        return instrumented(FunctionMetricsRegistry.getDefault(), name, function);
+    }
+
+    public static <A, B, R> BiFunction<A, B, R> instrumented(FunctionMetricsRegistry registry, String name, BiFunction<A, B, R> function) {
+        FunctionMetrics metrics = registry.metricsOf(name);
+        return (a, b) -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                R result = function.apply(a, b);
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed);
+            }
+        };
+    }
+
+    public static <A, B, C, R> Function3<A, B, C, R> instrumented(String name, Function3<A, B, C, R> function) {
+        return instrumented(FunctionMetricsRegistry.getDefault(), name, function);
+    }
+
+    public static <A, B, C, R> Function3<A, B, C, R> instrumented(FunctionMetricsRegistry registry, String name, Function3<A, B, C, R> function) {
+        FunctionMetrics metrics = registry.metricsOf(name);
+        return (a, b, c) -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                R result = function.apply(a, b, c);
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed);
+            }
+        };
+    }
+
+    /**
+     * As {@link #instrumented(String, Function)} but for partial functions.
+     * Named differently, so that a lambda passed to instrumented is not ambiguous.
+     */
+    public static <R> PartialFunction<R> instrumentedPartial(String name, PartialFunction<R> function) {
+        return instrumentedPartial(FunctionMetricsRegistry.getDefault(), name, function);
+    }
+
+    public static <R> PartialFunction<R> instrumentedPartial(FunctionMetricsRegistry registry, String name, PartialFunction<R> function) {
+        FunctionMetrics metrics = registry.metricsOf(name);
+        return arguments -> {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                R result = function.apply(arguments);
+                failed = false;
+                return result;
+            } finally {
+                metrics.record(System.nanoTime() - start, failed);
+            }
+        };
     }
 
-    private static void checkArgumentSize(int maxSize, int rawArgumentsSize, int applicableArgumentsSize) {
-        if (rawArgumentsSize + applicableArgumentsSize != maxSize) {
+    private static void checkArgumentSize(int freeArgumentsSize, int rawArgumentsSize) {
+        if (rawArgumentsSize != freeArgumentsSize) {
             throw new IllegalArgumentException(
-                    String.format("Cannot invoke partial function. Expected %s argument(s) but were %s", maxSize - applicableArgumentsSize, maxSize));
+                    String.format("Cannot invoke partial function. Expected %s argument(s) but were %s", freeArgumentsSize, rawArgumentsSize));
         }
     }
 
-    private static Method getMethod(Class<?> clazz) {
-        return Stream.of(clazz.getMethods()).filter(m -> m.getName().equals("apply")).findFirst().get();
+    private static MethodHandle findApply(Class<?> functionalInterface, int arity) {
+        MethodType type = MethodType.methodType(Object.class, Collections.nCopies(arity, Object.class));
+        try {
+            return MethodHandles.publicLookup().findVirtual(functionalInterface, "apply", type);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
     }
 
+    /**
+     * Binds the applicable arguments once, so that an invocation only spreads the free arguments
+     * over the remaining parameters instead of looking up and invoking the method reflectively.
+     * @param apply handle of the function's apply method, already bound to the function
+     */
     @SuppressWarnings("unchecked")
-    private static <R> PartialFunction<R> createPartialFunction(Object function, Argument... args) {
-        Collection<Argument<?>> applicableArgs = getApplicableArguments(args);
+    private static <R> PartialFunction<R> createPartialFunction(MethodHandle apply, Argument... args) {
+        MethodHandle handle = apply;
+        int freeArgumentsSize = args.length;
+        // insert from the back so that the positions of the preceding parameters don't shift
+        for (int i = args.length - 1; i >= 0; i--) {
+            if (args[i].isApplicable()) {
+                handle = MethodHandles.insertArguments(handle, i, args[i].orElse(null));
+                freeArgumentsSize--;
+            }
+        }
+        MethodHandle spreader = handle.asSpreader(Object[].class, freeArgumentsSize)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        int expectedArgumentsSize = freeArgumentsSize;
         return rawArguments -> {
-            checkArgumentSize(args.length, rawArguments.length, applicableArgs.size());
-            Supplier<Integer> counter = createCounter();
-            Method method = getMethod(function.getClass());
+            checkArgumentSize(expectedArgumentsSize, rawArguments.length);
             try {
-                return (R) method.invoke(function,
-                        Stream.of(args).map(arg -> arg.orElse(() -> rawArguments[counter.get()])).toArray());
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                LOGGER.log(Level.SEVERE, "Unable to create partial function.", e);
+                return (R) (Object) spreader.invokeExact(rawArguments);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
             }
-            return null;
         };
     }
-
-    private static List<Argument<?>> getApplicableArguments(Argument<?>... args) {
-        return Stream.of(args).filter(Argument::isApplicable).collect(toList());
-    }
 }
@@ -0,0 +1,52 @@
+package luxmeter.functions;
+
+import java.time.Duration;
+
+/**
+ * Bounds of the cache behind a memoized function. By default the cache is unbounded and entries never expire.
+ *
+ * @see Functions#memoize(java.util.function.Function, MemoizationOptions)
+ */
+public final class MemoizationOptions {
+    private long maximumSize = -1;
+    private Duration expireAfterWrite;
+
+    private MemoizationOptions() {
+    }
+
+    public static MemoizationOptions create() {
+        return new MemoizationOptions();
+    }
+
+    /**
+     * @param maximumSize number of results after which the least recently used ones are evicted
+     * @return this
+     */
+    public MemoizationOptions withMaximumSize(long maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException(String.format("Maximum size must not be negative: %s", maximumSize));
+        }
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    /**
+     * @param expireAfterWrite time after which a result is computed again
+     * @return this
+     */
+    public MemoizationOptions withExpireAfterWrite(Duration expireAfterWrite) {
+        if (expireAfterWrite.isNegative()) {
+            throw new IllegalArgumentException(String.format("Expiration must not be negative: %s", expireAfterWrite));
+        }
+        this.expireAfterWrite = expireAfterWrite;
+        return this;
+    }
+
+    long getMaximumSize() {
+        return maximumSize;
+    }
+
+    Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+}
@@ -0,0 +1,52 @@
+package luxmeter.functions;
+
+/**
+ * Statistics of the cache behind a memoized function at the time they were taken.
+ *
+ * @see MemoizedFunction#stats()
+ */
+public final class MemoizationStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    MemoizationStats(long hitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * @return number of invocations answered from the cache
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of invocations which had to compute the result
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of results evicted because of the maximum size or the expiration
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return ratio of invocations answered from the cache, 1 if there haven't been any invocations
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<MemoizationStats{hits=%s,misses=%s,evictions=%s}>", hitCount, missCount, evictionCount);
+    }
+}
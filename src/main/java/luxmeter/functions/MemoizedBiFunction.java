@@ -0,0 +1,20 @@
+package luxmeter.functions;
+
+import java.util.function.BiFunction;
+
+/**
+ * Function whose results are cached by its arguments.
+ *
+ * @see Functions#memoize
+ */
+public interface MemoizedBiFunction<A, B, R> extends BiFunction<A, B, R> {
+    /**
+     * @return hits, misses and evictions of the cache so far
+     */
+    MemoizationStats stats();
+
+    /**
+     * Discards all cached results.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,18 @@
+package luxmeter.functions;
+
+/**
+ * Function whose results are cached by its arguments.
+ *
+ * @see Functions#memoize
+ */
+public interface MemoizedFunction3<A, B, C, R> extends Function3<A, B, C, R> {
+    /**
+     * @return hits, misses and evictions of the cache so far
+     */
+    MemoizationStats stats();
+
+    /**
+     * Discards all cached results.
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,85 @@
+package luxmeter.functions;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Thread-safe cache of the results of a function by its arguments.
+ * Concurrent callers with equal arguments wait for a single computation.
+ * Null arguments and null results are supported.
+ */
+final class Memoizer<R> {
+    private final LoadingCache<Arguments, Optional<R>> cache;
+
+    Memoizer(MemoizationOptions options, Function<Object[], R> function) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+        if (options.getMaximumSize() >= 0) {
+            builder.maximumSize(options.getMaximumSize());
+        }
+        if (options.getExpireAfterWrite() != null) {
+            builder.expireAfterWrite(options.getExpireAfterWrite().toNanos(), TimeUnit.NANOSECONDS);
+        }
+        cache = builder.build(new CacheLoader<Arguments, Optional<R>>() {
+            @Override
+            public Optional<R> load(Arguments arguments) {
+                return Optional.ofNullable(function.apply(arguments.values));
+            }
+        });
+    }
+
+    R apply(Object... arguments) {
+        try {
+            return cache.getUnchecked(new Arguments(arguments)).orElse(null);
+        } catch (UncheckedExecutionException | ExecutionError e) {
+            // rethrow what the function has thrown
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    MemoizationStats stats() {
+        CacheStats stats = cache.stats();
+        return new MemoizationStats(stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private static final class Arguments {
+        private final Object[] values;
+        private final int hash;
+
+        Arguments(Object[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Arguments that = (Arguments) o;
+            return hash == that.hash && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
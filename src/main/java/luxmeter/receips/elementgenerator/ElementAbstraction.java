@@ -14,22 +14,79 @@ import java.util.stream.Collectors;
  */
 public final class ElementAbstraction {
     private final Object sourceElement;
-    private final Map<String, ?> keyPropertyValues;
-    private List<String> keyPropertyValuesAsString;
+    // computed from the ordinals on first access for the abstractions enumerated from the values ranges
+    private Map<String, ?> keyPropertyValues;
+    private final KeyPropertyEncoding encoding;
+    // identity if the values are within the values ranges and all combinations fit into a long, otherwise -1
+    private final long packedOrdinals;
+    // identity otherwise: either the ordinals or the string representations by property name
+    private final Object identity;
 
-    ElementAbstraction(Object sourceElement, Map<String, Object> keyPropertyValues,
-                       Map<String, Function<Object, String>> toStringMapper) {
+    ElementAbstraction(Object sourceElement, Map<String, Object> keyPropertyValues, KeyPropertyEncoding encoding) {
         this.sourceElement = sourceElement;
         this.keyPropertyValues = keyPropertyValues;
+        this.encoding = encoding;
         List<Map.Entry<String, Object>> nullOrEmptyValues = keyPropertyValues.entrySet().stream().filter(e -> (e.getValue() instanceof Collection && ((Collection) e.getValue()).isEmpty()) || e.getValue() == null).collect(Collectors.toList());
         if (!nullOrEmptyValues.isEmpty()) {
             throw new IllegalArgumentException(
                     String.format("It is forbidden for key properties to return null or an empty collections (or collection with null elements): %s",
                             nullOrEmptyValues));
         }
-        keyPropertyValuesAsString = keyPropertyValues.entrySet().stream()
-                .map(entry -> toStringMapper.getOrDefault(entry.getKey(), Objects::toString).apply(entry.getValue()))
-                .collect(Collectors.toList());
+        int[] ordinals = encoding.ordinalsOf(keyPropertyValues);
+        if (ordinals == null) {
+            packedOrdinals = -1;
+            identity = encoding.representationsOf(keyPropertyValues);
+        }
+        else if (encoding.isPackable()) {
+            packedOrdinals = encoding.pack(ordinals);
+            identity = null;
+        }
+        else {
+            packedOrdinals = -1;
+            identity = ordinals;
+        }
+    }
+
+    /**
+     * Generated abstraction of the values with the given packed ordinals.
+     */
+    ElementAbstraction(long packedOrdinals, KeyPropertyEncoding encoding) {
+        this.sourceElement = null;
+        this.encoding = encoding;
+        this.packedOrdinals = packedOrdinals;
+        this.identity = null;
+    }
+
+    /**
+     * Generated abstraction of the values with the given ordinals if they can't be packed.
+     */
+    ElementAbstraction(int[] ordinals, KeyPropertyEncoding encoding) {
+        this.sourceElement = null;
+        this.encoding = encoding;
+        this.packedOrdinals = -1;
+        this.identity = ordinals;
+    }
+
+    private ElementAbstraction(ElementAbstraction elementAbstraction) {
+        this.sourceElement = null;
+        this.keyPropertyValues = elementAbstraction.keyPropertyValues;
+        this.encoding = elementAbstraction.encoding;
+        this.packedOrdinals = elementAbstraction.packedOrdinals;
+        this.identity = elementAbstraction.identity;
+    }
+
+    /**
+     * @return equal abstraction which is not based on an existing element
+     */
+    ElementAbstraction asGenerated() {
+        return isGenerated() ? this : new ElementAbstraction(this);
+    }
+
+    /**
+     * @return true if all values are within the values ranges of the defined key properties
+     */
+    boolean isWithinValuesRanges() {
+        return packedOrdinals >= 0 || identity instanceof int[];
     }
 
     @Override
@@ -37,8 +94,13 @@ public final class ElementAbstraction {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ElementAbstraction elementAbstraction = (ElementAbstraction) o;
-        return keyPropertyValuesAsString.size() == elementAbstraction.keyPropertyValuesAsString.size()
-                && keyPropertyValuesAsString.containsAll(elementAbstraction.keyPropertyValuesAsString);
+        if (packedOrdinals != elementAbstraction.packedOrdinals) {
+            return false;
+        }
+        if (identity instanceof int[] && elementAbstraction.identity instanceof int[]) {
+            return Arrays.equals((int[]) identity, (int[]) elementAbstraction.identity);
+        }
+        return Objects.equals(identity, elementAbstraction.identity);
     }
 
     /**
@@ -50,7 +112,10 @@ public final class ElementAbstraction {
 
     @Override
     public int hashCode() {
-        return Objects.hash(keyPropertyValuesAsString);
+        if (identity == null) {
+            return Long.hashCode(packedOrdinals);
+        }
+        return identity instanceof int[] ? Arrays.hashCode((int[]) identity) : identity.hashCode();
     }
 
     /**
@@ -59,14 +124,25 @@ public final class ElementAbstraction {
      * @return non-null value
      */
     public <R> R get(String propertyName) {
-        return (R) keyPropertyValues.get(propertyName);
+        return (R) keyPropertyValues().get(propertyName);
     }
 
     /**
      * @return map of the properties this abstraction consists of
      */
     public Map<String, Object> getProperties() {
-        return new HashMap<>(keyPropertyValues);
+        return new HashMap<>(keyPropertyValues());
+    }
+
+    private Map<String, ?> keyPropertyValues() {
+        Map<String, ?> values = keyPropertyValues;
+        if (values == null) {
+            // safely published through the final field of the unmodifiable map, computing it twice is harmless
+            int[] ordinals = packedOrdinals >= 0 ? encoding.unpack(packedOrdinals) : (int[]) identity;
+            values = Collections.unmodifiableMap(encoding.valuesOf(ordinals));
+            keyPropertyValues = values;
+        }
+        return values;
     }
 
     /**
@@ -74,7 +150,7 @@ public final class ElementAbstraction {
      */
     @Override
     public String toString() {
-        List<String> mapAsString = keyPropertyValues.entrySet().stream()
+        List<String> mapAsString = keyPropertyValues().entrySet().stream()
                 .map(e -> e.getKey() + "=" + e.getValue())
                 .collect(Collectors.toList());
         String repr = mapAsString.stream().collect(Collectors.joining(",", "<ElementAbstraction{", "}>"));
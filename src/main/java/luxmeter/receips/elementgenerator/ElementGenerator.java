@@ -1,24 +1,31 @@
 package luxmeter.receips.elementgenerator;
 
+import luxmeter.collectionutils.ExecutionMode;
+
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import static luxmeter.collectionutils.CollectionUtils.removeAll;
-
 /**
  * Recipe to generate missing elements for a collection.
  * @see ElementGeneratorBuilder
  */
 public final class ElementGenerator<T> {
     private final Set<T> existingConcreteElements;
-    private final Set<ElementAbstraction> intermediateEndResult; // goal
+    private final Collection<ElementAbstraction> intermediateEndResult; // goal, enumerated lazily
     private final ElementFactory<T> elementConstructor;
 
     private final Function<T, Collection<ElementAbstraction>> intermediateResultsMapper;
     private final List<Reducer<T>> reducers;
+    private final ExecutionMode executionMode;
+    private final ForkJoinPool forkJoinPool;
 
     ElementGenerator(ElementGeneratorBuilder<T> builder) {
         Objects.requireNonNull(builder.getExistingElements(), "Did you forget to specify the already existing elements?");
@@ -31,9 +38,11 @@ public final class ElementGenerator<T> {
         this.intermediateResultsMapper = builder.getIntermediateResultsMapper();
 
         this.existingConcreteElements = new HashSet<>(builder.getExistingElements());
-        this.intermediateEndResult = new HashSet<>(builder.getIntermediateEndResult());
+        this.intermediateEndResult = builder.getIntermediateEndResult();
         this.elementConstructor = builder.getElementConstructor();
         this.reducers = new ArrayList<>(builder.getReducers());
+        this.executionMode = builder.getExecutionMode();
+        this.forkJoinPool = builder.getForkJoinPool();
     }
 
     /**
@@ -49,46 +58,147 @@ public final class ElementGenerator<T> {
      * @return all missing elements
      */
     public Set<T> generateMissingElements(MergeType merged) {
-        DuplicateSafeIntermediateResultsMapper duplicateSafeIntermediateResultsMapper =
-                new DuplicateSafeIntermediateResultsMapper();
-        Set<ElementAbstraction> existingAbstractElements = existingConcreteElements.stream()
-                .flatMap(duplicateSafeIntermediateResultsMapper::apply)
-                .collect(Collectors.toSet());
+        if (executionMode == ExecutionMode.SEQUENTIAL) {
+            return generateMissingElements(merged, false);
+        }
+        // parallel streams started within a task of a pool run on that pool.
+        // Unlike ForkJoinTask#get the future reports the original exception instead of a copy.
+        try {
+            return CompletableFuture.supplyAsync(() -> generateMissingElements(merged, true), forkJoinPool).get();
+        } catch (ExecutionException e) {
+            // report errors as in sequential mode
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the missing elements", e);
+        }
+    }
 
-        Set<ElementAbstraction> missingAbstractElements = removeAll(intermediateEndResult, existingAbstractElements);
+    private Set<T> generateMissingElements(MergeType merged, boolean parallel) {
+        Set<ElementAbstraction> existingAbstractElements = mapExistingElements(parallel);
 
-        Set<T> generatedMissingConcreteElements = missingAbstractElements.stream()
+        Set<ElementAbstraction> missingAbstractElements = missingAbstractions(existingAbstractElements, parallel)
+                .collect(Collectors.toSet());
+
+        Set<T> generatedMissingConcreteElements = stream(missingAbstractElements, parallel)
                 .map(elementAbstraction -> elementConstructor.createConcreteElement(missingAbstractElements, elementAbstraction))
                 .collect(Collectors.toSet());
 
         if (merged == MergeType.MERGED && !reducers.isEmpty()) {
-            generatedMissingConcreteElements = reduce(generatedMissingConcreteElements, reducers);
+            // reduce consumes the reducers
+            generatedMissingConcreteElements = reduce(generatedMissingConcreteElements, new ArrayList<>(reducers));
         }
 
         return generatedMissingConcreteElements;
     }
 
+    /**
+     * In contrast to {@link #generateMissingElements()} the missing elements are neither collected nor merged.
+     * All combinations of the key property values are enumerated one by one and checked against the existing elements,
+     * so that only the existing elements are held in memory.<br/>
+     * The set of all missing elements passed to the {@link ElementFactory} is a view which is also computed on demand.
+     * Thus, iterating over it or computing its size is expensive.
+     * @return stream of the missing elements (not merged)
+     */
+    public Stream<T> streamMissingElements() {
+        Set<ElementAbstraction> existingAbstractElements = mapExistingElements(false);
+        Set<ElementAbstraction> missingAbstractElements = new AbstractSet<ElementAbstraction>() {
+            @Override
+            public Iterator<ElementAbstraction> iterator() {
+                return missingAbstractions(existingAbstractElements, false).iterator();
+            }
+
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, missingAbstractions(existingAbstractElements, false).count());
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return intermediateEndResult.contains(o) && !existingAbstractElements.contains(o);
+            }
+        };
+        return missingAbstractions(existingAbstractElements, false)
+                .map(elementAbstraction -> elementConstructor.createConcreteElement(missingAbstractElements, elementAbstraction));
+    }
+
+    private Stream<ElementAbstraction> missingAbstractions(Set<ElementAbstraction> existingAbstractElements,
+                                                           boolean parallel) {
+        return stream(intermediateEndResult, parallel)
+                .filter(elementAbstraction -> !existingAbstractElements.contains(elementAbstraction));
+    }
+
+    private Set<ElementAbstraction> mapExistingElements(boolean parallel) {
+        DuplicateSafeIntermediateResultsMapper duplicateSafeIntermediateResultsMapper =
+                new DuplicateSafeIntermediateResultsMapper();
+        try {
+            return stream(existingConcreteElements, parallel)
+                    .flatMap(duplicateSafeIntermediateResultsMapper::apply)
+                    .collect(Collectors.toSet());
+        } catch (RuntimeException e) {
+            // a parallel stream rethrows a copy of an exception thrown by another thread
+            IllegalArgumentException failure = duplicateSafeIntermediateResultsMapper.getFailure();
+            throw failure != null ? failure : e;
+        }
+    }
+
+    static IllegalArgumentException alreadyConstructed(List<ElementAbstraction> knownAbstractions) {
+        return new IllegalArgumentException(String.format(
+                "Error: Existing concrete elements were mapped to " +
+                        "abstract elements that have been constructed already (%s).\n" +
+                        "Check your list of existing elements for duplicates " +
+                        "and conflicting key property values.",
+                knownAbstractions
+                ));
+    }
+
+    private static <E> Stream<E> stream(Collection<E> collection, boolean parallel) {
+        return parallel ? collection.parallelStream() : collection.stream();
+    }
+
+    /**
+     * Fails if an existing element is mapped to an abstraction another existing element has been mapped to already.
+     * May be shared between threads.
+     */
     private final class DuplicateSafeIntermediateResultsMapper
             implements Function<T, Stream<? extends ElementAbstraction>> {
-        private final List<ElementAbstraction> alreadyMappedAbstractions = new ArrayList<>();
+        private final Set<ElementAbstraction> alreadyMappedAbstractions = ConcurrentHashMap.newKeySet();
+        private final AtomicReference<IllegalArgumentException> failure = new AtomicReference<>();
 
         @Override
         public Stream<? extends ElementAbstraction> apply(T e) {
             Collection<ElementAbstraction> abstractions = intermediateResultsMapper.apply(e);
-            List<ElementAbstraction> knownAbstractions =
-                    abstractions.stream().filter(alreadyMappedAbstractions::contains).collect(Collectors.toList());
+            // the same element may be mapped to the same abstraction multiple times
+            Set<ElementAbstraction> mappedByThisElement = new HashSet<>();
+            List<ElementAbstraction> knownAbstractions = new ArrayList<>();
+            for (ElementAbstraction abstraction : abstractions) {
+                if (!mappedByThisElement.contains(abstraction) && !alreadyMappedAbstractions.add(abstraction)) {
+                    knownAbstractions.add(abstraction);
+                }
+                else {
+                    mappedByThisElement.add(abstraction);
+                }
+            }
             if (!knownAbstractions.isEmpty()) {
-                throw new IllegalArgumentException(String.format(
-                        "Error: Existing concrete elements were mapped to " +
-                                "abstract elements that have been constructed already (%s).\n" +
-                                "Check your list of existing elements for duplicates " +
-                                "and conflicting key property values.",
-                        knownAbstractions
-                        ));
+                IllegalArgumentException alreadyConstructed = alreadyConstructed(knownAbstractions);
+                failure.compareAndSet(null, alreadyConstructed);
+                throw alreadyConstructed;
             }
-            alreadyMappedAbstractions.addAll(abstractions);
             return abstractions.stream();
         }
+
+        /**
+         * @return the first duplicate detected by any thread or null
+         */
+        IllegalArgumentException getFailure() {
+            return failure.get();
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -1,6 +1,9 @@
 package luxmeter.receips.elementgenerator;
 
+import luxmeter.collectionutils.ExecutionMode;
+
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BinaryOperator;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -13,6 +16,8 @@ import static luxmeter.collectionutils.CollectionUtils.product;
  */
 public final class ElementGeneratorBuilder<T> {
     private KeyPropertyMetadataSet<T> keyPropertyMetadataSet = new KeyPropertyMetadataSet<T>();
+    // created on build since the key properties may be defined after the mappers
+    private KeyPropertyEncoding encoding;
 
     private Collection<T> existingElements;
     private Collection<ElementAbstraction> intermediateEndResult; // goal
@@ -20,6 +25,8 @@ public final class ElementGeneratorBuilder<T> {
 
     private Function<T, Collection<ElementAbstraction>> intermediateResultsMapper;
     private List<Reducer<T>> reducers = new ArrayList<>();
+    private ExecutionMode executionMode = ExecutionMode.SEQUENTIAL;
+    private ForkJoinPool forkJoinPool = ForkJoinPool.commonPool();
 
     /**
      * Using this constructor forces the user to declare a variable with the typed generics first.
@@ -52,7 +59,7 @@ public final class ElementGeneratorBuilder<T> {
     private Function<T, ElementAbstraction> createIntermediateResultMapper() {
         return concreteElement -> {
             Map<String, Object> keyValues = keyPropertyMetadataSet.getPropertyValues(concreteElement);
-            return new ElementAbstraction(concreteElement, keyValues, keyPropertyMetadataSet.getToStringMapper());
+            return new ElementAbstraction(concreteElement, keyValues, encoding);
         };
     }
 
@@ -69,7 +76,7 @@ public final class ElementGeneratorBuilder<T> {
                     .map(map -> {
                         map.putAll(keyPropertyMetadataSet.getPropertyValues(concreteElement, p -> !p.isCollection()));
                         ElementAbstraction elementAbstraction = new ElementAbstraction(
-                                concreteElement, map, keyPropertyMetadataSet.getToStringMapper());
+                                concreteElement, map, encoding);
                         return elementAbstraction;
                     }).collect(Collectors.toList());
             return result;
@@ -80,22 +87,6 @@ public final class ElementGeneratorBuilder<T> {
         return intermediateResultsMapper != null;
     }
 
-    @SuppressWarnings("unchecked")
-    private Set<ElementAbstraction> createIntermediateEndResult() {
-        List<List<?>> valueRanges = keyPropertyMetadataSet.getValueRanges();
-        List<List<Object>> productOfAllValues =
-                product((Collection[]) valueRanges.toArray(new List[valueRanges.size()]));
-        List<Map<String, Object>> namedProductOfAllValues = attachNames(productOfAllValues);
-        return namedProductOfAllValues.stream().map(map -> new ElementAbstraction(
-                null, map, keyPropertyMetadataSet.getToStringMapper())).collect(Collectors.toSet());
-    }
-
-    private List<Map<String, Object>> attachNames(List<List<Object>> productOfAllValues) {
-        return productOfAllValues.stream()
-                .map(singleCombination -> keyPropertyMetadataSet.getPropertyValues(singleCombination))
-                .collect(Collectors.toList());
-    }
-
     /**
      *
      * @param existingElements collection for which missing elements shall be generated
@@ -264,7 +255,7 @@ public final class ElementGeneratorBuilder<T> {
              Function<T, ElementAbstraction> intermediateResultMapper = concreteElement -> {
                 Function<T, Map<String, Object>> mapper = overriddenDefaults.getIntermediateResultMapper();
                 return new ElementAbstraction(
-                        concreteElement, mapper.apply(concreteElement), keyPropertyMetadataSet.getToStringMapper());
+                        concreteElement, mapper.apply(concreteElement), encoding);
             };
             this.intermediateResultsMapper = wrapIntoResultsMapper(intermediateResultMapper);
         }
@@ -274,7 +265,7 @@ public final class ElementGeneratorBuilder<T> {
                 Collection<Map<String, Object>> maps = mappers.apply(concreteElement);
                 return maps.stream()
                         .map(map -> new ElementAbstraction(
-                                concreteElement, map, keyPropertyMetadataSet.getToStringMapper()))
+                                concreteElement, map, encoding))
                         .collect(Collectors.toList());
             };
         }
@@ -285,13 +276,55 @@ public final class ElementGeneratorBuilder<T> {
         return e -> Collections.singletonList(intermediateResultMapper.apply(e));
     }
 
+    /**
+     * With {@link ExecutionMode#PARALLEL} the existing elements are mapped, the missing elements identified
+     * and the element factory invoked concurrently. Thus, the element factory has to be thread-safe.
+     * The generated elements and reported errors are the same as in sequential mode.
+     * @param executionMode sequential (default) or parallel generation
+     * @see #withForkJoinPool(ForkJoinPool)
+     * @return this
+     */
+    public ElementGeneratorBuilder<T> withExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = Objects.requireNonNull(executionMode);
+        return this;
+    }
+
+    /**
+     * @param forkJoinPool pool to generate the missing elements in parallel (common pool by default)
+     * @see #withExecutionMode(ExecutionMode)
+     * @return this
+     */
+    public ElementGeneratorBuilder<T> withForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = Objects.requireNonNull(forkJoinPool);
+        return this;
+    }
+
     /**
      * Builds the ElementGenerator.
      * @return configured ElementGenerator
      */
-    @SuppressWarnings("unchecked")
     public ElementGenerator<T> build() {
-        intermediateEndResult = createIntermediateEndResult();
+        prepare();
+        return new ElementGenerator<>(this);
+    }
+
+    /**
+     * Builds a generator which maintains the missing elements while existing elements are added or removed.
+     * The incremental generator never merges the missing elements and always runs sequentially,
+     * so the {@link #withReducer(Function, BinaryOperator) reducers}, the {@link #withExecutionMode execution mode}
+     * and the {@link #withForkJoinPool fork-join pool} are ignored.
+     * @return configured IncrementalElementGenerator initialized with the existing elements
+     * @see #build()
+     */
+    public IncrementalElementGenerator<T> buildIncremental() {
+        prepare();
+        return new IncrementalElementGenerator<>(this);
+    }
+
+    private void prepare() {
+        encoding = new KeyPropertyEncoding(keyPropertyMetadataSet);
+        // enumerated lazily by the generator
+        intermediateEndResult = new ElementUniverse(encoding);
 
         if (!intermediateResultMappersExist()) {
             if (keyPropertyMetadataSet.atLeastOnePropertyIsACollection()) {
@@ -300,8 +333,6 @@ public final class ElementGeneratorBuilder<T> {
                 intermediateResultsMapper = wrapIntoResultsMapper(createIntermediateResultMapper());
             }
         }
-
-        return new ElementGenerator<>(this);
     }
 
     /**
@@ -345,4 +376,18 @@ public final class ElementGeneratorBuilder<T> {
     List<Reducer<T>> getReducers() {
         return reducers;
     }
+
+    /**
+     * @return execution mode
+     */
+    ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * @return pool for parallel execution
+     */
+    ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
 }
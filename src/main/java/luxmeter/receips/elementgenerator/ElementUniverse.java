@@ -0,0 +1,87 @@
+package luxmeter.receips.elementgenerator;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * All combinations of the key property values (the intermediate end result).
+ * The combinations are not materialized but enumerated on demand as the ordinals of the distinct string
+ * representations, so that the universe takes memory proportional to the value ranges instead of their product.
+ * The values of an enumerated abstraction are only looked up if they are accessed.
+ */
+final class ElementUniverse extends AbstractCollection<ElementAbstraction> {
+    private final KeyPropertyEncoding encoding;
+    private final BigInteger combinationCount;
+
+    ElementUniverse(KeyPropertyEncoding encoding) {
+        this.encoding = encoding;
+        this.combinationCount = encoding.getCombinationCount();
+    }
+
+    @Override
+    public Iterator<ElementAbstraction> iterator() {
+        if (encoding.isPackable()) {
+            return packedOrdinals().mapToObj(packed -> new ElementAbstraction(packed, encoding)).iterator();
+        }
+        int[] radices = encoding.getRadices();
+        return new Iterator<ElementAbstraction>() {
+            // ordinals of the next combination, the last position changes fastest
+            private final int[] ordinals = new int[radices.length];
+            private boolean exhausted = combinationCount.signum() == 0;
+
+            @Override
+            public boolean hasNext() {
+                return !exhausted;
+            }
+
+            @Override
+            public ElementAbstraction next() {
+                if (exhausted) {
+                    throw new NoSuchElementException();
+                }
+                ElementAbstraction elementAbstraction = new ElementAbstraction(ordinals.clone(), encoding);
+                int position = ordinals.length - 1;
+                while (position >= 0 && ++ordinals[position] == radices[position]) {
+                    ordinals[position--] = 0;
+                }
+                exhausted = position < 0;
+                return elementAbstraction;
+            }
+        };
+    }
+
+    @Override
+    public Stream<ElementAbstraction> stream() {
+        if (encoding.isPackable()) {
+            return packedOrdinals().mapToObj(packed -> new ElementAbstraction(packed, encoding));
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Stream<ElementAbstraction> parallelStream() {
+        return stream().parallel();
+    }
+
+    /**
+     * @return number of combinations or {@link Integer#MAX_VALUE} if there are more
+     */
+    @Override
+    public int size() {
+        return combinationCount.bitLength() < Integer.SIZE ? combinationCount.intValue() : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof ElementAbstraction && ((ElementAbstraction) o).isWithinValuesRanges();
+    }
+
+    private LongStream packedOrdinals() {
+        // the packed ordinals of all combinations are exactly the numbers below their count
+        return LongStream.range(0, combinationCount.longValue());
+    }
+}
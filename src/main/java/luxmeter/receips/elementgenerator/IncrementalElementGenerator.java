@@ -0,0 +1,146 @@
+package luxmeter.receips.elementgenerator;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Recipe to maintain the missing elements of a collection which changes over time.
+ * Instead of identifying all missing elements again, only the abstractions of an added or removed existing element
+ * are checked. Thus, each change takes time proportional to the number of abstractions of the changed element,
+ * unless the element factory iterates over the set of all missing elements.<br/>
+ * The element factory is invoked for the elements whose missing state has changed only,
+ * so it should create equal elements for equal abstractions.<br/>
+ * This class is not thread-safe.
+ * @see ElementGeneratorBuilder#buildIncremental()
+ */
+public final class IncrementalElementGenerator<T> {
+    private final Collection<ElementAbstraction> intermediateEndResult; // goal, enumerated lazily
+    private final ElementFactory<T> elementConstructor;
+    private final Function<T, Collection<ElementAbstraction>> intermediateResultsMapper;
+    // existing element each abstraction has been mapped from
+    private final Map<ElementAbstraction, T> coverage = new HashMap<>();
+    // view passed to the element factory
+    private final Set<ElementAbstraction> missingAbstractElements = new AbstractSet<ElementAbstraction>() {
+        @Override
+        public Iterator<ElementAbstraction> iterator() {
+            return missingAbstractions().iterator();
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(Integer.MAX_VALUE, missingAbstractions().count());
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return intermediateEndResult.contains(o) && !coverage.containsKey(o);
+        }
+    };
+
+    IncrementalElementGenerator(ElementGeneratorBuilder<T> builder) {
+        Objects.requireNonNull(builder.getExistingElements(), "Did you forget to specify the already existing elements?");
+        Objects.requireNonNull(builder.getIntermediateEndResult());
+        Objects.requireNonNull(builder.getElementConstructor());
+        Objects.requireNonNull(builder.getIntermediateResultsMapper(),
+                "Either an intermediateResultMapper or intermediateResult[s]Mapper must be passed in.");
+
+        this.intermediateEndResult = builder.getIntermediateEndResult();
+        this.elementConstructor = builder.getElementConstructor();
+        this.intermediateResultsMapper = builder.getIntermediateResultsMapper();
+        for (T existingElement : new HashSet<>(builder.getExistingElements())) {
+            cover(existingElement, abstractionsOf(existingElement));
+        }
+    }
+
+    /**
+     * @return all currently missing elements (not merged), enumerated lazily
+     * @see ElementGenerator#streamMissingElements()
+     */
+    public Stream<T> streamMissingElements() {
+        return missingAbstractions().map(this::createConcreteElement);
+    }
+
+    /**
+     * The element factory is invoked for the no longer missing elements before they are removed from the set of all
+     * missing elements, which is passed to it. Iterating over that set or computing its size takes time proportional
+     * to all combinations of the key property values instead of the changed abstractions.
+     * @param existingElement element which has been added to the collection
+     * @return elements which are no longer missing
+     * @throws IllegalArgumentException if the element conflicts with another existing element,
+     * the missing elements are left unchanged then
+     */
+    public MissingElementsDelta<T> addExisting(T existingElement) {
+        Collection<ElementAbstraction> abstractions = abstractionsOf(existingElement);
+        Set<T> noLongerMissing = new HashSet<>();
+        for (ElementAbstraction abstraction : abstractions) {
+            if (missingAbstractElements.contains(abstraction)) {
+                noLongerMissing.add(createConcreteElement(abstraction));
+            }
+        }
+        cover(existingElement, abstractions);
+        return new MissingElementsDelta<>(Collections.emptySet(), noLongerMissing);
+    }
+
+    /**
+     * The element factory is invoked for the newly missing elements after they have been added to the set of all
+     * missing elements, which is passed to it. Iterating over that set or computing its size takes time proportional
+     * to all combinations of the key property values instead of the changed abstractions.
+     * @param existingElement element which has been removed from the collection
+     * @return elements which are missing now
+     * @throws IllegalArgumentException if the element is not an existing element
+     */
+    public MissingElementsDelta<T> removeExisting(T existingElement) {
+        Collection<ElementAbstraction> abstractions = intermediateResultsMapper.apply(existingElement);
+        for (ElementAbstraction abstraction : abstractions) {
+            if (!existingElement.equals(coverage.get(abstraction))) {
+                throw new IllegalArgumentException(String.format("%s is not an existing element", existingElement));
+            }
+        }
+
+        Set<T> newlyMissing = new HashSet<>();
+        for (ElementAbstraction abstraction : abstractions) {
+            if (coverage.remove(abstraction) != null && intermediateEndResult.contains(abstraction)) {
+                newlyMissing.add(createConcreteElement(abstraction));
+            }
+        }
+        return new MissingElementsDelta<>(newlyMissing, Collections.emptySet());
+    }
+
+    /**
+     * @return abstractions of the existing element
+     * @throws IllegalArgumentException if the element conflicts with another existing element
+     */
+    private Collection<ElementAbstraction> abstractionsOf(T existingElement) {
+        Collection<ElementAbstraction> abstractions = intermediateResultsMapper.apply(existingElement);
+        List<ElementAbstraction> knownAbstractions = new ArrayList<>();
+        for (ElementAbstraction abstraction : abstractions) {
+            T coveringElement = coverage.get(abstraction);
+            if (coveringElement != null && !coveringElement.equals(existingElement)) {
+                knownAbstractions.add(abstraction);
+            }
+        }
+        if (!knownAbstractions.isEmpty()) {
+            throw ElementGenerator.alreadyConstructed(knownAbstractions);
+        }
+        return abstractions;
+    }
+
+    /**
+     * Records the abstractions of the existing element without creating any concrete elements.
+     */
+    private void cover(T existingElement, Collection<ElementAbstraction> abstractions) {
+        for (ElementAbstraction abstraction : abstractions) {
+            coverage.put(abstraction, existingElement);
+        }
+    }
+
+    private Stream<ElementAbstraction> missingAbstractions() {
+        return intermediateEndResult.stream()
+                .filter(elementAbstraction -> !coverage.containsKey(elementAbstraction));
+    }
+
+    private T createConcreteElement(ElementAbstraction abstraction) {
+        return elementConstructor.createConcreteElement(missingAbstractElements, abstraction.asGenerated());
+    }
+}
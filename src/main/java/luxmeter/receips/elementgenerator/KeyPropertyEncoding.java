@@ -0,0 +1,143 @@
+package luxmeter.receips.elementgenerator;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Encodes the key property values of an {@link ElementAbstraction} as the ordinals of their string representations
+ * within the values ranges. Each property has a fixed position, so that equal values of different properties
+ * are distinguished. The ordinals are packed into a single long if all combinations fit into it.
+ */
+final class KeyPropertyEncoding {
+    private final List<String> propertyNames;
+    private final Map<String, Function<Object, String>> toStringMapper;
+    // ordinal of each string representation per position
+    private final List<Map<String, Integer>> ordinals = new ArrayList<>();
+    // first value of each string representation per position
+    private final List<List<?>> representativeValues = new ArrayList<>();
+    // null if the number of combinations exceeds a long
+    private final long[] strides;
+    private final BigInteger combinationCount;
+
+    <T> KeyPropertyEncoding(KeyPropertyMetadataSet<T> keyPropertyMetadataSet) {
+        this.propertyNames = keyPropertyMetadataSet.getPropertyNames();
+        this.toStringMapper = keyPropertyMetadataSet.getToStringMapper();
+        List<List<?>> valueRanges = keyPropertyMetadataSet.getValueRanges();
+        for (int position = 0; position < propertyNames.size(); position++) {
+            Function<Object, String> mapper = toStringMapper.get(propertyNames.get(position));
+            Map<String, Integer> ordinalsOfPosition = new HashMap<>();
+            List<Object> representativesOfPosition = new ArrayList<>();
+            for (Object value : valueRanges.get(position)) {
+                // values with the same representation share an ordinal
+                if (ordinalsOfPosition.putIfAbsent(mapper.apply(value), ordinalsOfPosition.size()) == null) {
+                    representativesOfPosition.add(value);
+                }
+            }
+            ordinals.add(ordinalsOfPosition);
+            representativeValues.add(representativesOfPosition);
+        }
+
+        long[] packedStrides = new long[propertyNames.size()];
+        BigInteger combinations = BigInteger.ONE;
+        for (int position = propertyNames.size() - 1; position >= 0; position--) {
+            packedStrides[position] = combinations.longValue();
+            combinations = combinations.multiply(BigInteger.valueOf(ordinals.get(position).size()));
+        }
+        strides = combinations.bitLength() < Long.SIZE ? packedStrides : null;
+        // without any key property there is no combination, as for an empty cartesian product
+        combinationCount = propertyNames.isEmpty() ? BigInteger.ZERO : combinations;
+    }
+
+    /**
+     * @return number of combinations of the distinct string representations
+     */
+    BigInteger getCombinationCount() {
+        return combinationCount;
+    }
+
+    /**
+     * @return number of distinct string representations per position
+     */
+    int[] getRadices() {
+        int[] radices = new int[ordinals.size()];
+        for (int position = 0; position < radices.length; position++) {
+            radices[position] = ordinals.get(position).size();
+        }
+        return radices;
+    }
+
+    /**
+     * @param ordinalsByPosition ordinals within the values ranges
+     * @return for each position the first value with the ordinal's string representation by property name
+     */
+    Map<String, Object> valuesOf(int[] ordinalsByPosition) {
+        Map<String, Object> keyPropertyValues = new HashMap<>();
+        for (int position = 0; position < ordinalsByPosition.length; position++) {
+            keyPropertyValues.put(propertyNames.get(position),
+                    representativeValues.get(position).get(ordinalsByPosition[position]));
+        }
+        return keyPropertyValues;
+    }
+
+    Function<Object, String> getToStringMapper(String propertyName) {
+        return toStringMapper.getOrDefault(propertyName, Objects::toString);
+    }
+
+    /**
+     * @param keyPropertyValues values by property name
+     * @return ordinals by position or null if the properties differ from the defined ones
+     * or a value is not within the values range
+     */
+    int[] ordinalsOf(Map<String, ?> keyPropertyValues) {
+        if (keyPropertyValues.size() != propertyNames.size()) {
+            return null;
+        }
+        int[] result = new int[propertyNames.size()];
+        for (int position = 0; position < result.length; position++) {
+            String propertyName = propertyNames.get(position);
+            if (!keyPropertyValues.containsKey(propertyName)) {
+                return null;
+            }
+            Integer ordinal = ordinals.get(position).get(
+                    getToStringMapper(propertyName).apply(keyPropertyValues.get(propertyName)));
+            if (ordinal == null) {
+                return null;
+            }
+            result[position] = ordinal;
+        }
+        return result;
+    }
+
+    boolean isPackable() {
+        return strides != null;
+    }
+
+    long pack(int[] ordinalsByPosition) {
+        long packed = 0;
+        for (int position = 0; position < ordinalsByPosition.length; position++) {
+            packed += ordinalsByPosition[position] * strides[position];
+        }
+        return packed;
+    }
+
+    int[] unpack(long packed) {
+        int[] ordinalsByPosition = new int[strides.length];
+        for (int position = 0; position < ordinalsByPosition.length; position++) {
+            ordinalsByPosition[position] = (int) (packed / strides[position]);
+            packed %= strides[position];
+        }
+        return ordinalsByPosition;
+    }
+
+    /**
+     * Identity of values which cannot be encoded as ordinals.
+     * @return string representations by property name
+     */
+    Map<String, String> representationsOf(Map<String, ?> keyPropertyValues) {
+        Map<String, String> representations = new HashMap<>();
+        keyPropertyValues.forEach((propertyName, value) ->
+                representations.put(propertyName, getToStringMapper(propertyName).apply(value)));
+        return representations;
+    }
+}
@@ -61,12 +61,10 @@ class KeyPropertyMetadataSet<T> {
         return map;
     }
 
-    public Map<String, Object> getPropertyValues(List<Object> singleCombination) {
-        Stream<String> propertyNames = keyPropertiesMetadata.stream()
-                .map(KeyPropertyMetadata::getPropertyName);
-        List<Pair<String, Object>> zipped = zip(propertyNames, singleCombination.stream()).collect(Collectors.toList());
-        Map<String, Object> map = zipped.stream().collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
-        return map;
+    public List<String> getPropertyNames() {
+        return keyPropertiesMetadata.stream()
+                .map(KeyPropertyMetadata::getPropertyName)
+                .collect(Collectors.toList());
     }
 
     public List<List<?>> getValueRanges() {
@@ -0,0 +1,44 @@
+package luxmeter.receips.elementgenerator;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Change of the missing elements caused by adding or removing an existing element.
+ * @see IncrementalElementGenerator
+ */
+public final class MissingElementsDelta<T> {
+    private final Set<T> newlyMissing;
+    private final Set<T> noLongerMissing;
+
+    MissingElementsDelta(Set<T> newlyMissing, Set<T> noLongerMissing) {
+        this.newlyMissing = Collections.unmodifiableSet(newlyMissing);
+        this.noLongerMissing = Collections.unmodifiableSet(noLongerMissing);
+    }
+
+    /**
+     * @return generated elements which are missing now
+     */
+    public Set<T> getNewlyMissing() {
+        return newlyMissing;
+    }
+
+    /**
+     * @return generated elements which have been missing before but are covered by an existing element now
+     */
+    public Set<T> getNoLongerMissing() {
+        return noLongerMissing;
+    }
+
+    /**
+     * @return true if the missing elements haven't changed
+     */
+    public boolean isEmpty() {
+        return newlyMissing.isEmpty() && noLongerMissing.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("<MissingElementsDelta{newlyMissing=%s,noLongerMissing=%s}>", newlyMissing, noLongerMissing);
+    }
+}
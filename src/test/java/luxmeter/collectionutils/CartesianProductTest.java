@@ -0,0 +1,194 @@
+package luxmeter.collectionutils;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CartesianProductTest {
+    private final CartesianProduct product = new CartesianProduct(
+            Arrays.asList("5510", "5520"), Arrays.asList("PX", "TX", "XX"), Arrays.asList("A", "B"));
+
+    @Test
+    public void shouldIterateLikeAnOdometer() {
+        assertThat(product, hasSize(12));
+        assertThat(product, contains(
+                Arrays.asList("5510", "PX", "A"),
+                Arrays.asList("5510", "PX", "B"),
+                Arrays.asList("5510", "TX", "A"),
+                Arrays.asList("5510", "TX", "B"),
+                Arrays.asList("5510", "XX", "A"),
+                Arrays.asList("5510", "XX", "B"),
+                Arrays.asList("5520", "PX", "A"),
+                Arrays.asList("5520", "PX", "B"),
+                Arrays.asList("5520", "TX", "A"),
+                Arrays.asList("5520", "TX", "B"),
+                Arrays.asList("5520", "XX", "A"),
+                Arrays.asList("5520", "XX", "B")));
+    }
+
+    @Test
+    public void shouldAccessRowsRandomly() {
+        int rowIndex = 0;
+        for (List<Object> row : product) {
+            assertThat(product.get(rowIndex++), is(row));
+        }
+        assertThat(product.get(7), contains("5520", "PX", "B"));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRejectIndexOutOfBounds() {
+        product.get(12);
+    }
+
+    @Test
+    public void shouldBeEmptyIfAnyVectorIsEmpty() {
+        assertThat(new CartesianProduct(Arrays.asList("a", "b"), Collections.emptyList()), is(empty()));
+        assertThat(new CartesianProduct(), is(empty()));
+    }
+
+    @Test
+    public void shouldAccessRowsBeyondIntegerRange() {
+        List<Integer> digits = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        CartesianProduct hugeProduct = new CartesianProduct(digits, digits, digits, digits, digits);
+        assertThat(hugeProduct.size(), is(Integer.MAX_VALUE));
+        assertThat(hugeProduct.longSize(), is(OptionalLong.of(10_000_000_000L)));
+        assertThat(hugeProduct.get(9_999_999_999L), contains(99, 99, 99, 99, 99));
+        assertThat(hugeProduct.get(3_000_000_001L), contains(30, 0, 0, 0, 1));
+    }
+
+    @Test
+    public void shouldReportSizeBeyondLongRange() {
+        List<Collection> vectors = Collections.nCopies(20, Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        CartesianProduct hugeProduct = new CartesianProduct(vectors);
+        assertThat(hugeProduct.longSize(), is(OptionalLong.empty()));
+        assertThat(hugeProduct.bigSize(), is(BigInteger.TEN.pow(20)));
+        assertThat(hugeProduct.get(Long.MAX_VALUE).stream().map(Object::toString).collect(Collectors.joining()),
+                is("0" + Long.MAX_VALUE));
+        Iterator<List<Object>> iterator = hugeProduct.iterator();
+        iterator.next();
+        assertThat(iterator.next().get(19), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToSplitProductsBeyondLongRange() {
+        List<Collection> vectors = Collections.nCopies(20, Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        new CartesianProduct(vectors).stream();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldFailToMaterializeHugeProducts() {
+        List<Integer> digits = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        CollectionUtils.product(digits, digits, digits, digits, digits);
+    }
+
+    @Test
+    public void shouldStreamInParallel() {
+        List<Integer> digits = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+        List<List<Object>> rows = CollectionUtils.productStream(digits, digits, digits, digits)
+                .parallel()
+                .collect(Collectors.toList());
+        assertThat(rows, is(new ArrayList<>(new CartesianProduct(digits, digits, digits, digits))));
+        assertThat(CollectionUtils.productStream(digits, digits).parallel()
+                .filter(row -> row.get(0).equals(row.get(1))).count(), is(10L));
+    }
+
+    @Test
+    public void shouldSplitByRowRanges() {
+        Spliterator<List<Object>> suffix = product.spliterator();
+        assertThat(suffix.hasCharacteristics(Spliterator.SUBSIZED), is(true));
+        Spliterator<List<Object>> prefix = suffix.trySplit();
+        assertThat(prefix.estimateSize(), is(6L));
+        assertThat(suffix.estimateSize(), is(6L));
+        suffix.tryAdvance(row -> assertThat(row, is(product.get(6))));
+    }
+
+    @Test
+    public void shouldVisitRowsWithReusedBuffer() {
+        List<List<Object>> rows = new ArrayList<>();
+        Set<Object[]> buffers = Collections.newSetFromMap(new IdentityHashMap<>());
+        product.forEachRow(row -> {
+            buffers.add(row);
+            rows.add(Arrays.asList(row.clone()));
+        });
+        assertThat(rows, is(new ArrayList<>(product)));
+        assertThat(buffers, hasSize(1));
+    }
+
+    @Test
+    public void shouldVisitOrdinals() {
+        List<String> ordinals = new ArrayList<>();
+        product.forEachOrdinals(row -> ordinals.add(Arrays.toString(row)));
+        assertThat(ordinals, hasSize(12));
+        assertThat(ordinals.get(0), is("[0, 0, 0]"));
+        assertThat(ordinals.get(7), is("[1, 0, 1]"));
+    }
+
+    @Test
+    public void shouldMoveCursorOverAllRows() {
+        ProductCursor cursor = product.cursor();
+        int rowIndex = 0;
+        while (cursor.next()) {
+            List<Object> expected = product.get(rowIndex++);
+            assertThat(cursor.get(0), is(expected.get(0)));
+            assertThat(cursor.get(2), is(expected.get(2)));
+        }
+        assertThat(rowIndex, is(12));
+        assertThat(cursor.next(), is(false));
+        assertThat(new CartesianProduct(Collections.emptyList()).cursor().next(), is(false));
+    }
+
+    @Test
+    public void shouldRankAndUnrankRows() {
+        ProductIndex index = product.index();
+        assertThat(index.size(), is(12L));
+        for (long rank = 0; rank < index.size(); rank++) {
+            List<Object> row = index.unrank(rank);
+            assertThat(row, is(product.get(rank)));
+            assertThat(index.rank(row), is(rank));
+        }
+        assertThat(index.contains(Arrays.asList("5520", "TX", "B")), is(true));
+        assertThat(index.contains(Arrays.asList("5520", "ZZ", "B")), is(false));
+        assertThat(index.contains(Arrays.asList("5520", "TX")), is(false));
+        assertThat(index.ordinal(1, "XX"), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectRankOfUnknownRow() {
+        product.index().rank(Arrays.asList("5520", "ZZ", "B"));
+    }
+
+    @Test
+    public void shouldIterateInGrayCodeOrder() {
+        CartesianProduct grayProduct = new CartesianProduct(
+                Arrays.asList("5510", "5520"), Collections.singletonList("X"), Arrays.asList("PX", "TX", "XX"),
+                Arrays.asList("A", "B"));
+        GrayCodeIterator iterator = grayProduct.grayCodeIterator();
+        List<List<Object>> rows = new ArrayList<>();
+        List<Object> previous = null;
+        while (iterator.hasNext()) {
+            List<Object> row = iterator.next();
+            if (previous == null) {
+                assertThat(iterator.changedColumn(), is(-1));
+            }
+            else {
+                int changedColumn = iterator.changedColumn();
+                for (int column = 0; column < row.size(); column++) {
+                    assertThat(row.get(column).equals(previous.get(column)), is(column != changedColumn));
+                }
+            }
+            rows.add(row);
+            previous = row;
+        }
+        assertThat(rows, hasSize(12));
+        assertThat(rows, containsInAnyOrder(grayProduct.toArray()));
+        assertThat(rows.get(0), contains("5510", "X", "PX", "A"));
+        assertThat(rows.get(1), contains("5510", "X", "PX", "B"));
+        assertThat(rows.get(2), contains("5510", "X", "TX", "B"));
+    }
+}
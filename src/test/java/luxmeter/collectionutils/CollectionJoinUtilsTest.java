@@ -0,0 +1,80 @@
+package luxmeter.collectionutils;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static luxmeter.collectionutils.CollectionJoinUtils.*;
+import static luxmeter.collectionutils.CollectionSortUtils.tuple;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class CollectionJoinUtilsTest {
+    private final List<String> left = Arrays.asList("a1", "b1", "b2", "c1", "e1");
+    private final List<String> right = Arrays.asList("a", "b", "d", "e", "e");
+
+    @Test
+    public void shouldInnerJoinWithHashStrategy() {
+        Iterable<Pair<String, String>> joined = innerJoin(left, right,
+                l -> tuple(l.substring(0, 1)), r -> tuple(r));
+        assertThat(joined, containsInAnyOrder(
+                Pair.of("a1", "a"), Pair.of("b1", "b"), Pair.of("b2", "b"),
+                Pair.of("e1", "e"), Pair.of("e1", "e")));
+    }
+
+    @Test
+    public void shouldInnerJoinWhenBuildingOnTheLeftSide() {
+        Iterable<Pair<String, String>> joined = innerJoin(Arrays.asList("b1", "e1"), right,
+                l -> tuple(l.substring(0, 1)), r -> tuple(r));
+        assertThat(joined, containsInAnyOrder(
+                Pair.of("b1", "b"), Pair.of("e1", "e"), Pair.of("e1", "e")));
+    }
+
+    @Test
+    public void shouldInnerJoinWithSortMergeStrategy() {
+        Iterable<Pair<String, String>> joined = innerJoin(left, right,
+                l -> tuple(l.substring(0, 1)), r -> tuple(r), JoinStrategy.SORT_MERGE);
+        assertThat(joined, contains(
+                Pair.of("a1", "a"), Pair.of("b1", "b"), Pair.of("b2", "b"),
+                Pair.of("e1", "e"), Pair.of("e1", "e")));
+    }
+
+    @Test
+    public void shouldLeftJoin() {
+        for (JoinStrategy strategy : JoinStrategy.values()) {
+            Iterable<Pair<String, String>> joined = leftJoin(left, right,
+                    l -> tuple(l.substring(0, 1)), r -> tuple(r), strategy);
+            assertThat(joined, containsInAnyOrder(
+                    Pair.of("a1", "a"), Pair.of("b1", "b"), Pair.of("b2", "b"), Pair.of("c1", null),
+                    Pair.of("e1", "e"), Pair.of("e1", "e")));
+        }
+    }
+
+    @Test
+    public void shouldAntiJoin() {
+        for (JoinStrategy strategy : JoinStrategy.values()) {
+            Iterable<String> joined = antiJoin(left, right,
+                    l -> tuple(l.substring(0, 1)), r -> tuple(r), strategy);
+            assertThat(joined, contains("c1"));
+        }
+    }
+
+    @Test
+    public void shouldAntiJoinWhenBuildingOnTheLeftSide() {
+        Iterable<String> joined = antiJoin(Arrays.asList("c1", "b1", "x1"), right,
+                l -> tuple(l.substring(0, 1)), r -> tuple(r));
+        assertThat(joined, contains("c1", "x1"));
+    }
+
+    @Test
+    public void shouldJoinOnComposedKeysWithNullValues() {
+        List<String> nullableRight = Arrays.asList("b", null);
+        for (JoinStrategy strategy : JoinStrategy.values()) {
+            Iterable<Pair<String, String>> joined = innerJoin(Arrays.asList("b", null), nullableRight,
+                    l -> tuple(1, l), r -> tuple(1, r), strategy);
+            assertThat(joined, containsInAnyOrder(Pair.of("b", "b"), Pair.of((String) null, (String) null)));
+        }
+    }
+}
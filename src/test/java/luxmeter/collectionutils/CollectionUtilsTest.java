@@ -8,11 +8,15 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static luxmeter.collectionutils.CollectionSortUtils.tuple;
 import static luxmeter.collectionutils.CollectionUtils.*;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertThat;
@@ -148,4 +152,156 @@ public class CollectionUtilsTest {
             "[5520, XX, B]"
         ));
     }
+
+    @Test
+    public void shouldGroupByComposedKeys() {
+        List<String> values = Arrays.asList("a1", "b1", "a2", "b1", "c3");
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            Map<ComposedKey, List<String>> groups = groupByKeys(values, v -> tuple(v.charAt(0), v.length()), mode);
+            assertThat(groups.size(), is(3));
+            assertThat(groups.get(ComposedKey.of('a', 2)), contains("a1", "a2"));
+            assertThat(groups.get(ComposedKey.of('b', 2)), contains("b1", "b1"));
+            assertThat(groups.get(ComposedKey.of('c', 2)), contains("c3"));
+        }
+    }
+
+    @Test
+    public void shouldCountByComposedKeys() {
+        List<String> values = Arrays.asList("a1", "b1", "a2", "b1", null);
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            Map<ComposedKey, Long> counts = countByKeys(values, v -> tuple(v == null ? null : v.charAt(0)), mode);
+            assertThat(counts.get(ComposedKey.of('a')), is(2L));
+            assertThat(counts.get(ComposedKey.of('b')), is(2L));
+            assertThat(counts.get(ComposedKey.of((Comparable) null)), is(1L));
+        }
+    }
+
+    @Test
+    public void shouldRemoveElementsWithDuplicateKeys() {
+        List<String> values = Arrays.asList("a1", "b1", "a2", "c1", "b2");
+        assertThat(distinctByKeys(values, v -> tuple(v.charAt(0))), contains("a1", "b1", "c1"));
+        assertThat(distinctByKeys(values.stream(), v -> tuple(v.charAt(1))).collect(Collectors.toList()),
+                contains("a1", "a2"));
+    }
+
+    @Test
+    public void shouldRemoveElementsWithDuplicateKeysOfStreamsTurnedParallelAfterwards() {
+        List<Integer> values = IntStream.range(0, 100_000).map(i -> i % 1000).boxed().collect(Collectors.toList());
+        assertThat(distinctByKeys(values.stream(), v -> tuple(v)).parallel().count(), is(1000L));
+    }
+
+    @Test
+    public void shouldRemoveElementsWithDuplicateKeysApproximately() {
+        List<Integer> values = IntStream.range(0, 1000).map(i -> i % 100).boxed().collect(Collectors.toList());
+        List<Integer> distinct = toList(distinctByKeys(values, v -> tuple(v), 100, 0.0001));
+        assertThat(distinct.size(), lessThanOrEqualTo(100));
+        assertThat(distinct.size(), greaterThan(95));
+        assertThat(distinctByKeys(values.parallelStream(), v -> tuple(v), 100, 0.0001).count(),
+                lessThanOrEqualTo(100L));
+    }
+
+    @Test
+    public void shouldDiffSnapshots() {
+        List<String> oldSnapshot = Arrays.asList("a1", "b1", "c1", "d1");
+        List<String> newSnapshot = Arrays.asList("a1", "b2", "d1", "e1");
+        for (JoinStrategy strategy : JoinStrategy.values()) {
+            Diff<String> diff = diff(oldSnapshot, newSnapshot, v -> tuple(v.charAt(0)), String::equals, strategy);
+            assertThat(diff.getAdded(), contains("e1"));
+            assertThat(diff.getRemoved(), contains("c1"));
+            assertThat(diff.getChanged(), contains(Pair.of("b1", "b2")));
+        }
+    }
+
+    @Test
+    public void shouldDiffSortedSnapshotsLazily() {
+        List<DiffEntry<String>> entries = diffStream(Arrays.asList("a1", "c1"), Arrays.asList("b1", "c2"),
+                v -> tuple(v.charAt(0)), String::equals, JoinStrategy.SORT_MERGE).collect(Collectors.toList());
+        assertThat(entries, contains(
+                new DiffEntry<>(DiffType.REMOVED, "a1", null),
+                new DiffEntry<>(DiffType.ADDED, null, "b1"),
+                new DiffEntry<>(DiffType.CHANGED, "c1", "c2")));
+    }
+
+    @Test
+    public void shouldDiffNullElements() {
+        CollectionSortUtils.ComposedKeyProvider<String> keyProvider = v -> tuple(v == null ? null : v.charAt(0));
+        Diff<String> diff = diff(Arrays.asList(null, "a1"), Arrays.asList("a2", null), keyProvider, Objects::equals);
+        assertThat(diff.getAdded(), empty());
+        assertThat(diff.getRemoved(), empty());
+        assertThat(diff.getChanged(), contains(Pair.of("a1", "a2")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicateKeysAfterNullElements() {
+        diff(Arrays.asList(null, null), Arrays.asList("a1"), v -> tuple(v == null ? null : v.charAt(0)), Objects::equals);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectDuplicateKeysWhenDiffing() {
+        diff(Arrays.asList("a1", "a2"), Arrays.asList("a1"), v -> tuple(v.charAt(0)), String::equals);
+    }
+
+    @Test
+    public void shouldDrawSample() {
+        List<Integer> values = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        List<Integer> sample = sample(values, 10, new Random(42));
+        assertThat(sample, hasSize(10));
+        assertThat(values, hasItems(sample.toArray(new Integer[0])));
+        assertThat(sample(values.subList(0, 3), 10, new Random(42)), containsInAnyOrder(0, 1, 2));
+
+        List<Integer> parallelSample = values.parallelStream().collect(toSample(10, new Random(42)));
+        assertThat(parallelSample, hasSize(10));
+        assertThat(Sets.newHashSet(parallelSample), hasSize(10));
+    }
+
+    @Test
+    public void shouldDrawStratifiedSample() {
+        List<Integer> values = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        Map<ComposedKey, List<Integer>> samples = stratifiedSample(values, v -> tuple(v % 3), 5, new Random(42));
+        assertThat(samples.size(), is(3));
+        for (int group = 0; group < 3; group++) {
+            List<Integer> sample = samples.get(ComposedKey.of(group));
+            assertThat(sample, hasSize(5));
+            int expectedGroup = group;
+            assertThat(sample.stream().allMatch(v -> v % 3 == expectedGroup), is(true));
+        }
+        Map<ComposedKey, List<Integer>> parallelSamples = values.parallelStream()
+                .collect(toStratifiedSample(v -> tuple(v % 3), 5, new Random(42)));
+        assertThat(parallelSamples.get(ComposedKey.of(1)), hasSize(5));
+    }
+
+    @Test
+    public void shouldEnumerateTypedPairsInDifferentOrderThanPairProduct() {
+        List<String> first = Arrays.asList("a", "b");
+        List<Integer> second = Arrays.asList(1, 2);
+        assertThat(product(first, second), contains(
+                Pair.of("a", 1), Pair.of("b", 1), Pair.of("a", 2), Pair.of("b", 2)));
+        assertThat(product2(first, second), contains(
+                Pair.of("a", 1), Pair.of("a", 2), Pair.of("b", 1), Pair.of("b", 2)));
+    }
+
+    @Test
+    public void shouldBuildTypedProducts() {
+        assertThat(product2(Arrays.asList("a", "b"), Arrays.asList(1, 2)), contains(
+                Pair.of("a", 1), Pair.of("a", 2), Pair.of("b", 1), Pair.of("b", 2)));
+        Iterable<String> rows = product3(Arrays.asList("5510", "5520"), Arrays.asList("PX", "TX"), Arrays.asList(1, 2),
+                (chargeCode, product, zone) -> chargeCode + product + zone);
+        assertThat(rows, contains("5510PX1", "5510PX2", "5510TX1", "5510TX2",
+                "5520PX1", "5520PX2", "5520TX1", "5520TX2"));
+        assertThat(toList(product6(Arrays.asList(1, 2), Arrays.asList(1, 2), Arrays.asList(1, 2), Arrays.asList(1, 2),
+                Arrays.asList(1, 2), Arrays.asList(1, 2), (a, b, c, d, e, f) -> a + b + c + d + e + f)), hasSize(64));
+        assertThat(product2(Arrays.asList("a", "b"), new ArrayList<Integer>()), is(emptyIterable()));
+    }
+
+    @Test
+    public void shouldBuildPrimitiveProducts() {
+        List<String> rows = toStream(intProduct(new int[]{1, 2}, new int[]{3, 4, 5}))
+                .map(Arrays::toString)
+                .collect(Collectors.toList());
+        assertThat(rows, contains("[1, 3]", "[1, 4]", "[1, 5]", "[2, 3]", "[2, 4]", "[2, 5]"));
+        assertThat(toList(doubleProduct(new double[]{0.5}, new double[]{1.5, 2.5})).get(1)[1], is(2.5));
+        assertThat(toList(longProduct(new long[]{1L}, new long[0])), is(empty()));
+        // the primitive variants don't make a product without vectors ambiguous
+        assertThat(product(), is(empty()));
+    }
 }
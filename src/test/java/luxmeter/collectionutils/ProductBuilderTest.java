@@ -0,0 +1,69 @@
+package luxmeter.collectionutils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ProductBuilderTest {
+    @Test
+    public void shouldBuildUnconstrainedProduct() {
+        Iterable<List<Object>> rows = ProductBuilder.create()
+                .withValues(Arrays.asList("PX", "TX"))
+                .withValues(Arrays.asList("A", "B"))
+                .build();
+        assertThat(rows, contains(
+                Arrays.asList("PX", "A"),
+                Arrays.asList("PX", "B"),
+                Arrays.asList("TX", "A"),
+                Arrays.asList("TX", "B")));
+    }
+
+    @Test
+    public void shouldSkipSubTreesOfInvalidPrefixes() {
+        AtomicInteger checkedRows = new AtomicInteger();
+        Iterable<List<Object>> rows = ProductBuilder.create()
+                .withValues(Arrays.asList("PX", "TX"))
+                .withValues(Arrays.asList("A", "B"))
+                .withConstraint(prefix -> !(prefix.get(0).equals("TX") && prefix.get(1).equals("B")))
+                .withValues(Arrays.asList("5510", "5520"))
+                .withConstraint(row -> checkedRows.incrementAndGet() > 0)
+                .build();
+        assertThat(rows, contains(
+                Arrays.asList("PX", "A", "5510"),
+                Arrays.asList("PX", "A", "5520"),
+                Arrays.asList("PX", "B", "5510"),
+                Arrays.asList("PX", "B", "5520"),
+                Arrays.asList("TX", "A", "5510"),
+                Arrays.asList("TX", "A", "5520")));
+        assertThat(checkedRows.get(), is(6));
+    }
+
+    @Test
+    public void shouldEnumerateAsCartesianProduct() {
+        List<Integer> digits = Arrays.asList(0, 1, 2);
+        Iterable<List<Object>> rows = ProductBuilder.create()
+                .withValues(digits).withValues(digits).withValues(digits).build();
+        assertThat(CollectionUtils.toList(rows), is(new ArrayList<>(new CartesianProduct(digits, digits, digits))));
+        assertThat(ProductBuilder.create().build(), is(emptyIterable()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectConstraintWithoutColumns() {
+        ProductBuilder.create().withConstraint(prefix -> true);
+    }
+
+    @Test
+    public void shouldNotChangeBuiltProductWhenAddingConstraintsAfterwards() {
+        ProductBuilder builder = ProductBuilder.create()
+                .withValues(Arrays.asList("PX", "TX"));
+        Iterable<List<Object>> rows = builder.build();
+        builder.withConstraint(prefix -> prefix.get(0).equals("PX"));
+        assertThat(rows, contains(Arrays.asList((Object) "PX"), Arrays.asList((Object) "TX")));
+    }
+}
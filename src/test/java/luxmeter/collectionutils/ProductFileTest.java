@@ -0,0 +1,77 @@
+package luxmeter.collectionutils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class ProductFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadWrittenOrdinalsByRank() throws IOException {
+        // the vectors need one, two and four bytes per ordinal
+        assertReadableByRank(new CartesianProduct(range(3), range(300), range(2)));
+        assertReadableByRank(new CartesianProduct(range(70000), range(2)));
+    }
+
+    @Test
+    public void shouldWriteEmptyProduct() throws IOException {
+        Path file = folder.newFile().toPath();
+        assertThat(ProductFileWriter.write(new CartesianProduct(Arrays.asList("a"), Arrays.asList()), file), equalTo(0L));
+        try (ProductFileReader reader = ProductFileReader.open(file)) {
+            assertThat(reader.size(), equalTo(0L));
+            assertThat(reader.columnCount(), equalTo(2));
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldRejectRankOutOfBounds() throws IOException {
+        Path file = folder.newFile().toPath();
+        ProductFileWriter.write(new CartesianProduct(Arrays.asList("a", "b")), file);
+        try (ProductFileReader reader = ProductFileReader.open(file)) {
+            reader.ordinalsAt(2);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectForeignFile() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        ProductFileReader.open(file);
+    }
+
+    private void assertReadableByRank(CartesianProduct product) throws IOException {
+        Path file = folder.newFile().toPath();
+        long size = product.longSize().getAsLong();
+        assertThat(ProductFileWriter.write(product, file), equalTo(size));
+
+        try (ProductFileReader reader = ProductFileReader.open(file)) {
+            assertThat(reader.size(), equalTo(size));
+            assertThat(reader.columnCount(), equalTo(product.radices().length));
+            ProductCursor cursor = product.cursor();
+            for (long rank = 0; cursor.next(); rank++) {
+                int[] ordinals = reader.ordinalsAt(rank);
+                for (int column = 0; column < ordinals.length; column++) {
+                    assertThat(ordinals[column], equalTo(cursor.ordinal(column)));
+                    assertThat(reader.ordinalAt(rank, column), equalTo(cursor.ordinal(column)));
+                }
+            }
+        }
+    }
+
+    private static List<Integer> range(int size) {
+        return IntStream.range(0, size).boxed().collect(Collectors.toList());
+    }
+}
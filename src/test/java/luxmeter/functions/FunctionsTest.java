@@ -4,9 +4,26 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongSupplier;
+import java.util.stream.LongStream;
+
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
 import static luxmeter.functions.Argument.bind;
 import static luxmeter.functions.Argument.free;
-import static luxmeter.functions.Functions.partial;
+import static luxmeter.functions.Functions.*;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
@@ -38,6 +55,254 @@ public class FunctionsTest {
         partial.apply(5, 2); // should fail since there is no third parameter
     }
 
+    @Test
+    public void testBindPositions() {
+        Function<Integer, Integer> subFrom10 = bind1(this::sub, 10);
+        assertThat(subFrom10.apply(3), is(7));
+        Function<Integer, Integer> sub3 = bind2(this::sub, 3);
+        assertThat(sub3.apply(10), is(7));
+
+        Function3<String, String, String, String> concat3 = (a, b, c) -> a + b + c;
+        BiFunction<String, String, String> withMiddle = bind2(concat3, "-");
+        assertThat(withMiddle.apply("a", "b"), is("a-b"));
+        assertThat(bind1(bind3(concat3, "c"), "a").apply("b"), is("abc"));
+    }
+
+    @Test
+    public void testBindUpToSixArguments() {
+        Function6<String, String, String, String, String, String, String> concat6 =
+                (a, b, c, d, e, f) -> a + b + c + d + e + f;
+        Function5<String, String, String, String, String, String> concat5 = bind6(concat6, "f");
+        Function4<String, String, String, String, String> concat4 = bind1(concat5, "a");
+        assertThat(concat4.apply("b", "c", "d", "e"), is("abcdef"));
+        assertThat(bind3(concat4, "x").apply("b", "c", "e"), is("abcxef"));
+    }
+
+    @Test
+    public void testBindPrimitives() {
+        IntUnaryOperator subFrom10 = bindInt1(this::sub, 10);
+        assertThat(subFrom10.applyAsInt(3), is(7));
+        assertThat(bindInt2(this::sub, 3).applyAsInt(10), is(7));
+        assertThat(bindLong2((a, b) -> a - b, 3L).applyAsLong(10L), is(7L));
+        assertThat(bindDouble1((a, b) -> a / b, 1.0).applyAsDouble(4.0), is(0.25));
+    }
+
+    @Test
+    public void testMemoizeComputesOncePerArguments() {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizedBiFunction<Integer, Integer, Integer> memoized = memoize((Integer a, Integer b) -> {
+            calls.incrementAndGet();
+            return a - b;
+        });
+        assertThat(memoized.apply(10, 3), is(7));
+        assertThat(memoized.apply(10, 3), is(7));
+        assertThat(memoized.apply(3, 10), is(-7));
+        assertThat(calls.get(), is(2));
+        assertThat(memoized.stats().getHitCount(), is(1L));
+        assertThat(memoized.stats().getMissCount(), is(2L));
+    }
+
+    @Test
+    public void testMemoizeNullArgumentsAndResults() {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizedFunction<String, String> memoized = memoize((String s) -> {
+            calls.incrementAndGet();
+            return s == null ? null : s.toUpperCase();
+        });
+        assertThat(memoized.apply(null), is((String) null));
+        assertThat(memoized.apply(null), is((String) null));
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void testMemoizeEvictsBeyondMaximumSize() {
+        MemoizedFunction3<Integer, Integer, Integer, Integer> memoized = memoize(
+                (Function3<Integer, Integer, Integer, Integer>) this::add,
+                MemoizationOptions.create().withMaximumSize(2));
+        for (int i = 0; i < 5; i++) {
+            assertThat(memoized.apply(i, i, i), is(3 * i));
+        }
+        assertThat(memoized.stats().getEvictionCount(), is(3L));
+    }
+
+    @Test
+    public void testMemoizePropagatesExceptions() {
+        thrown.expect(IllegalStateException.class);
+        thrown.expectMessage("boom");
+        memoize((Integer i) -> {
+            throw new IllegalStateException("boom");
+        }).apply(1);
+    }
+
+    @Test
+    public void testMemoizeComputesOnceForConcurrentCallers() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        MemoizedFunction<Integer, Integer> memoized = memoize((Integer i) -> {
+            calls.incrementAndGet();
+            sleep(50);
+            return i * 2;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> memoized.apply(21)));
+            }
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), is(42));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(calls.get(), is(1));
+    }
+
+    @Test
+    public void testCounters() {
+        IntSupplier intCounter = createIntCounter();
+        assertThat(intCounter.getAsInt(), is(0));
+        assertThat(intCounter.getAsInt(), is(1));
+        LongSupplier longCounter = createLongCounter();
+        assertThat(longCounter.getAsLong(), is(0L));
+        assertThat(longCounter.getAsLong(), is(1L));
+    }
+
+    @Test
+    public void testSequenceIsUniqueAcrossThreads() {
+        LongSupplier sequence = createSequence(100);
+        Set<Long> ids = LongStream.range(0, 100_000).parallel()
+                .map(i -> sequence.getAsLong())
+                .boxed()
+                .collect(toSet());
+        assertThat(ids.size(), is(100_000));
+        assertThat(sequence.getAsLong(), is(100_100L));
+    }
+
+    @Test
+    public void testStripedCounterAcrossThreads() {
+        LongAdder counter = createStripedCounter();
+        LongStream.range(0, 100_000).parallel().forEach(i -> counter.increment());
+        assertThat(counter.sum(), is(100_000L));
+    }
+
+    @Test
+    public void testBatchingDispatchesFullBatches() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        Function<String, CompletableFuture<String>> batching = batching(keys -> {
+            batches.add(keys);
+            return keys.stream().collect(toMap(Function.identity(), String::toUpperCase));
+        }, 3, Duration.ofHours(1), Runnable::run);
+
+        CompletableFuture<String> a = batching.apply("a");
+        CompletableFuture<String> b = batching.apply("b");
+        assertThat(batching.apply("a") == a, is(true));
+        assertThat(a.isDone(), is(false));
+        CompletableFuture<String> c = batching.apply("c");
+
+        assertThat(batches, is(Arrays.asList(Arrays.asList("a", "b", "c"))));
+        assertThat(a.get() + b.get() + c.get(), is("ABC"));
+    }
+
+    @Test
+    public void testBatchingDispatchesAfterMaxDelay() throws Exception {
+        AtomicInteger bulkCalls = new AtomicInteger();
+        Function<Integer, CompletableFuture<Integer>> batching = batching(keys -> {
+            bulkCalls.incrementAndGet();
+            return keys.stream().collect(toMap(Function.identity(), key -> key * 2));
+        }, 100, Duration.ofMillis(20));
+
+        CompletableFuture<Integer> one = batching.apply(1);
+        CompletableFuture<Integer> two = batching.apply(2);
+        assertThat(one.get(5, TimeUnit.SECONDS), is(2));
+        assertThat(two.get(5, TimeUnit.SECONDS), is(4));
+        assertThat(bulkCalls.get(), is(1));
+    }
+
+    @Test
+    public void testBatchingIgnoresFlushOfAlreadyDispatchedBatch() throws Exception {
+        List<List<String>> batches = new CopyOnWriteArrayList<>();
+        ManualTimer timer = new ManualTimer();
+        try {
+            Function<String, CompletableFuture<String>> batching = new BatchingFunction<>(keys -> {
+                batches.add(keys);
+                return keys.stream().collect(toMap(Function.identity(), String::toUpperCase));
+            }, 2, Duration.ofMillis(1), Runnable::run, timer);
+
+            batching.apply("a");
+            batching.apply("b");
+            CompletableFuture<String> c = batching.apply("c");
+            // the flush of the first batch fires although the batch has been dispatched when it was full
+            timer.scheduledFlushes.get(0).run();
+            assertThat(batches, is(Arrays.asList(Arrays.asList("a", "b"))));
+            assertThat(c.isDone(), is(false));
+
+            timer.scheduledFlushes.get(1).run();
+            assertThat(c.get(), is("C"));
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBatchingPropagatesFailures() throws Exception {
+        Function<Integer, CompletableFuture<Integer>> batching = batching(keys -> {
+            throw new IllegalStateException("lookup failed");
+        }, 1, Duration.ZERO, Runnable::run);
+        thrown.expect(ExecutionException.class);
+        thrown.expectMessage("lookup failed");
+        batching.apply(1).get();
+    }
+
+    @Test
+    public void testInstrumentedRecordsInvocationsAndErrors() {
+        FunctionMetricsRegistry registry = FunctionMetricsRegistry.create();
+        BiFunction<Integer, Integer, Integer> div = instrumented(registry, "div", (Integer a, Integer b) -> a / b);
+        PartialFunction<Integer> half = instrumentedPartial(registry, "half", partial(div, free(), bind(2)));
+        Function<Integer, Integer> inc = instrumented(registry, "inc", x -> x + 1);
+
+        assertThat(div.apply(10, 2), is(5));
+        assertThat(half.apply(8), is(4));
+        assertThat(inc.apply(1), is(2));
+        try {
+            div.apply(1, 0);
+        } catch (ArithmeticException expected) {
+            // recorded as error
+        }
+
+        FunctionMetricsSnapshot divMetrics = registry.snapshot("div").get();
+        assertThat(divMetrics.getInvocationCount(), is(3L));
+        assertThat(divMetrics.getErrorCount(), is(1L));
+        assertThat(divMetrics.getLatencyNanos(100) >= divMetrics.getMaxNanos(), is(true));
+        assertThat(registry.snapshot("half").get().getInvocationCount(), is(1L));
+        assertThat(registry.snapshot("unknown").isPresent(), is(false));
+        assertThat(registry.snapshots().get(0).getName(), is("div"));
+    }
+
+    /**
+     * Collects the scheduled flushes instead of running them, so that a test decides when they fire.
+     */
+    private static final class ManualTimer extends ScheduledThreadPoolExecutor {
+        private final List<Runnable> scheduledFlushes = new ArrayList<>();
+
+        ManualTimer() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            scheduledFlushes.add(command);
+            return super.schedule(() -> { }, 1, TimeUnit.HOURS);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private int add(int a, int b, int c) {
         return a + b + c;
     }
@@ -0,0 +1,38 @@
+package luxmeter.functions;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LatencyHistogramTest {
+    @Test
+    public void shouldCountSmallValuesExactly() {
+        for (int value = 0; value < 16; value++) {
+            assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value)), is((long) value));
+        }
+    }
+
+    @Test
+    public void shouldBoundRelativeErrorOfLargeValues() {
+        for (long value = 16; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            assertThat(highest, greaterThanOrEqualTo(value));
+            assertThat((double) (highest - value), lessThanOrEqualTo(value / 8.0));
+        }
+        long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertThat(highest, is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldComputePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value * 1000);
+        }
+        long[] counts = histogram.counts();
+        assertThat(LatencyHistogram.valueAtPercentile(counts, 50), allOf(greaterThanOrEqualTo(50_000L), lessThan(57_000L)));
+        assertThat(LatencyHistogram.valueAtPercentile(counts, 100), allOf(greaterThanOrEqualTo(100_000L), lessThan(113_000L)));
+        assertThat(LatencyHistogram.valueAtPercentile(new LatencyHistogram().counts(), 99), is(0L));
+    }
+}
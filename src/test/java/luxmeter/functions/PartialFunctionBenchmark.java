@@ -0,0 +1,64 @@
+package luxmeter.functions;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static luxmeter.functions.Argument.bind;
+import static luxmeter.functions.Argument.free;
+
+/**
+ * Compares invoking a partial function with invoking an equivalent lambda directly.
+ * Run via {@link #main(String[])} from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialFunctionBenchmark {
+    private final PartialFunction<Integer> partial2 = Functions.<Integer, Integer, Integer>partial(
+            PartialFunctionBenchmark::add, bind(2), free());
+    private final PartialFunction<Integer> partial3 = Functions.<Integer, Integer, Integer, Integer>partial(
+            PartialFunctionBenchmark::add, bind(2), free(), bind(3));
+    private final Function<Integer, Integer> lambda2 = b -> add(2, b);
+    private final Function<Integer, Integer> lambda3 = b -> add(2, b, 3);
+    private Integer argument = 5;
+
+    @Benchmark
+    public Integer partial2() {
+        return partial2.apply(argument);
+    }
+
+    @Benchmark
+    public Integer partial3() {
+        return partial3.apply(argument);
+    }
+
+    @Benchmark
+    public Integer lambda2() {
+        return lambda2.apply(argument);
+    }
+
+    @Benchmark
+    public Integer lambda3() {
+        return lambda3.apply(argument);
+    }
+
+    private static int add(int a, int b) {
+        return a + b;
+    }
+
+    private static int add(int a, int b, int c) {
+        return a + b + c;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PartialFunctionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,5 +1,6 @@
 package luxmeter.receips.elementgenerator;
 
+import luxmeter.collectionutils.ExecutionMode;
 import luxmeter.receips.elementgenerator.model.ChargeCode;
 import luxmeter.receips.elementgenerator.model.Product;
 import luxmeter.receips.elementgenerator.model.Rate;
@@ -15,6 +16,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 import static java.util.Arrays.asList;
@@ -257,6 +259,50 @@ public class CommonUsecasesWithComplexObjectsTest {
                         createRate("5510", "someName", asList(TX, XX), asList(A, B))));
     }
 
+    /**
+     * Tests if the missing elements generated in parallel are the same as in sequential mode.
+     */
+    @Test
+    public void shouldGenerateAndMergeMissingElementsInParallel() {
+        List<Rate> existingRates = createRatesWithZones();
+        List<ChargeCode> allChargeCodes = existingRates.stream()
+                .map(Rate::getChargeCode)
+                .collect(Collectors.toList());
+        ValuesExtractor<Rate, Product, Set<Product>> productExtractor = Rate::getProducts;
+        ValuesExtractor<Rate, Zone, Set<Zone>> zoneExtractor = Rate::getZones;
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ElementGenerator<Rate> elementGenerator = ElementGeneratorBuilder.create(Rate.class)
+                    .withExistingElements(existingRates)
+                    .withSingleValueProperty("chargeCode", allChargeCodes, Rate::getChargeCode, ChargeCode::getCode)
+                    .withCollectionProperty("product", applicableProducts, productExtractor)
+                    .withCollectionProperty("zone", applicableZones, zoneExtractor)
+                    .withElementFactory(abstractElement -> new Rate(
+                            abstractElement.get("chargeCode"),
+                            singleton(abstractElement.get("product")),
+                            singleton(abstractElement.get("zone"))))
+                    .withReducers(
+                            Reducer.create(this::groupByChargeCodeAndProduct, this::mergeByZones),
+                            Reducer.create(this::groupByChargeCodeAndZone, this::mergeByProducts))
+                    .withExecutionMode(ExecutionMode.PARALLEL)
+                    .withForkJoinPool(pool)
+                    .build();
+
+            assertThat(elementGenerator.generateMissingElements(), hasSize(7));
+            // the reducers are applied again on each invocation
+            for (int i = 0; i < 2; i++) {
+                assertThat(elementGenerator.generateMissingElements(MERGED),
+                        containsInAnyOrder(
+                                createRate("5500", "someName", singleton(XX), asList(A, B)),
+                                createRate("5510", "someName", PX, B),
+                                createRate("5510", "someName", asList(TX, XX), asList(A, B))));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     /**
      * Tests if complex objects with key properties being collections can be generated wiht overriden default behaviour.
      */
@@ -1,11 +1,13 @@
 package luxmeter.receips.elementgenerator;
 
+import luxmeter.collectionutils.ExecutionMode;
 import luxmeter.receips.elementgenerator.model.Product;
 import luxmeter.receips.elementgenerator.model.SimplifiedRate;
 import luxmeter.receips.elementgenerator.model.Zone;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -14,13 +16,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static luxmeter.receips.elementgenerator.model.Product.PX;
 import static luxmeter.receips.elementgenerator.model.Zone.A;
 import static luxmeter.receips.elementgenerator.model.Zone.B;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.fail;
 
 public class CommonUsecasesWithSimpleObjectsTest {
     private Set<Zone> applicableZones;
@@ -168,4 +175,148 @@ public class CommonUsecasesWithSimpleObjectsTest {
                         new SimplifiedRate("5510", Product.XX, Zone.B)
                 ));
     }
+
+    @Test
+    public void shouldStreamMissingElements() {
+        List<String> allChargeCodes = simplifiedRates.stream()
+                .map(SimplifiedRate::getChargeCode)
+                .collect(Collectors.toList());
+        ElementGenerator<SimplifiedRate> elementGenerator = ElementGeneratorBuilder.create(SimplifiedRate.class)
+                .withExistingElements(simplifiedRates)
+                .withSingleValueProperty("chargeCode", allChargeCodes, SimplifiedRate::getChargeCode)
+                .withSingleValueProperty("product", applicableProducts, SimplifiedRate::getProduct)
+                .withSingleValueProperty("zone", applicableZones, SimplifiedRate::getZone)
+                .withElementFactory((allGeneratedElements, abstractElement) -> {
+                    assertThat(allGeneratedElements.contains(abstractElement), is(true));
+                    return new SimplifiedRate(
+                            abstractElement.get("chargeCode"),
+                            abstractElement.get("product"),
+                            abstractElement.get("zone"));
+                })
+                .build();
+
+        assertThat(elementGenerator.streamMissingElements().collect(Collectors.toSet()),
+                is(elementGenerator.generateMissingElements()));
+        assertThat(elementGenerator.streamMissingElements().count(), is(10L));
+    }
+
+    @Test
+    public void shouldStreamMissingElementsOnceForRepeatedValues() {
+        ElementGenerator<List<String>> elementGenerator = ElementGeneratorBuilder.<List<String>>create()
+                .withExistingElements(Collections.singletonList(Arrays.asList("x", "1")))
+                .withSingleValueProperty("a", Arrays.asList("x", "y", "y"), element -> element.get(0))
+                .withSingleValueProperty("b", Arrays.asList("1", "2"), element -> element.get(1))
+                .withElementFactory(abstractElement -> Arrays.asList(abstractElement.get("a"), abstractElement.get("b")))
+                .build();
+
+        assertThat(elementGenerator.generateMissingElements().size(), is(3));
+        assertThat(elementGenerator.streamMissingElements().collect(Collectors.toList()),
+                containsInAnyOrder(Arrays.asList("x", "2"), Arrays.asList("y", "1"), Arrays.asList("y", "2")));
+    }
+
+    @Test
+    public void shouldStreamMissingElementsWithoutMaterializingTheUniverse() {
+        // 10^10 combinations
+        List<Integer> range = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        ElementGeneratorBuilder<List<Integer>> builder = ElementGeneratorBuilder.create();
+        for (int i = 0; i < 5; i++) {
+            int position = i;
+            builder.withSingleValueProperty("p" + i, range, element -> element.get(position));
+        }
+        ElementGenerator<List<Integer>> elementGenerator = builder
+                .withExistingElements(Collections.singletonList(Arrays.asList(0, 0, 0, 0, 0)))
+                .withElementFactory(abstractElement -> Arrays.asList(abstractElement.get("p0"),
+                        abstractElement.get("p1"), abstractElement.get("p2"),
+                        abstractElement.get("p3"), abstractElement.get("p4")))
+                .build();
+
+        assertThat(elementGenerator.streamMissingElements().limit(2).collect(Collectors.toList()),
+                contains(Arrays.asList(0, 0, 0, 0, 1), Arrays.asList(0, 0, 0, 0, 2)));
+    }
+
+    @Test
+    public void shouldStreamMissingElementsOfUniversesBeyondLongRange() {
+        // 100^10 combinations, their ordinals can't be packed into a long
+        List<Integer> range = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        List<Integer> first = Collections.nCopies(10, 0);
+        ElementGeneratorBuilder<List<Integer>> builder = ElementGeneratorBuilder.create();
+        for (int i = 0; i < 10; i++) {
+            int position = i;
+            builder.withSingleValueProperty("p" + i, range, element -> element.get(position));
+        }
+        ElementGenerator<List<Integer>> elementGenerator = builder
+                .withExistingElements(Collections.singletonList(first))
+                .withElementFactory(abstractElement -> IntStream.range(0, 10)
+                        .mapToObj(i -> abstractElement.<Integer>get("p" + i))
+                        .collect(Collectors.toList()))
+                .build();
+
+        List<Integer> second = new ArrayList<>(first);
+        second.set(9, 1);
+        List<Integer> third = new ArrayList<>(first);
+        third.set(9, 2);
+        assertThat(elementGenerator.streamMissingElements().limit(2).collect(Collectors.toList()),
+                contains(second, third));
+    }
+
+    @Test
+    public void shouldDistinguishSwappedValuesOfDifferentProperties() {
+        List<Zone> zones = Arrays.asList(A, B);
+        ElementGenerator<List<Zone>> elementGenerator = ElementGeneratorBuilder.<List<Zone>>create()
+                .withExistingElements(Arrays.asList(Arrays.asList(A, B), Arrays.asList(B, A)))
+                .withSingleValueProperty("from", zones, element -> element.get(0))
+                .withSingleValueProperty("to", zones, element -> element.get(1))
+                .withElementFactory(abstractElement -> Arrays.asList(abstractElement.get("from"), abstractElement.get("to")))
+                .build();
+
+        assertThat(elementGenerator.generateMissingElements(),
+                containsInAnyOrder(Arrays.asList(A, A), Arrays.asList(B, B)));
+    }
+
+    @Test
+    public void shouldRejectExistingElementsWithConflictingKeys() {
+        // same key property values but different charge codes
+        List<SimplifiedRate> conflicting = Arrays.asList(
+                new SimplifiedRate("5500", PX, A),
+                new SimplifiedRate("5510", PX, B),
+                new SimplifiedRate("5520", PX, A));
+        ElementGenerator<SimplifiedRate> elementGenerator = ElementGeneratorBuilder.create(SimplifiedRate.class)
+                .withExistingElements(conflicting)
+                .withSingleValueProperty("product", applicableProducts, SimplifiedRate::getProduct)
+                .withSingleValueProperty("zone", applicableZones, SimplifiedRate::getZone)
+                .withElementFactory(abstractElement -> new SimplifiedRate(
+                        "5500", abstractElement.get("product"), abstractElement.get("zone")))
+                .build();
+
+        try {
+            elementGenerator.generateMissingElements();
+            fail("conflicting existing elements must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), startsWith("Error: Existing concrete elements were mapped to " +
+                    "abstract elements that have been constructed already ([<ElementAbstraction{"));
+        }
+    }
+
+    @Test
+    public void shouldRejectConflictingExistingElementsDetectedByDifferentThreads() {
+        // every key is shared by four elements, so that the duplicates are detected by several threads
+        List<List<Integer>> conflicting = IntStream.range(0, 4000)
+                .mapToObj(id -> Arrays.asList(id % 1000, id))
+                .collect(Collectors.toList());
+        List<Integer> keys = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+        ElementGenerator<List<Integer>> elementGenerator = ElementGeneratorBuilder.<List<Integer>>create()
+                .withExistingElements(conflicting)
+                .withSingleValueProperty("key", keys, element -> element.get(0))
+                .withElementFactory(abstractElement -> Arrays.asList(abstractElement.get("key"), -1))
+                .withExecutionMode(ExecutionMode.PARALLEL)
+                .build();
+
+        try {
+            elementGenerator.generateMissingElements();
+            fail("conflicting existing elements must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), startsWith("Error: Existing concrete elements were mapped to " +
+                    "abstract elements that have been constructed already ([<ElementAbstraction{"));
+        }
+    }
 }
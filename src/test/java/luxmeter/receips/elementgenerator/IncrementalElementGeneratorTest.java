@@ -0,0 +1,176 @@
+package luxmeter.receips.elementgenerator;
+
+import luxmeter.receips.elementgenerator.model.Product;
+import luxmeter.receips.elementgenerator.model.SimplifiedRate;
+import luxmeter.receips.elementgenerator.model.Zone;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static luxmeter.receips.elementgenerator.model.Product.PX;
+import static luxmeter.receips.elementgenerator.model.Product.TX;
+import static luxmeter.receips.elementgenerator.model.Zone.A;
+import static luxmeter.receips.elementgenerator.model.Zone.B;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.fail;
+
+public class IncrementalElementGeneratorTest {
+    private List<SimplifiedRate> simplifiedRates;
+    private IncrementalElementGenerator<SimplifiedRate> elementGenerator;
+
+    @Before
+    public void setup() {
+        simplifiedRates = new ArrayList<>(Arrays.asList(
+                new SimplifiedRate("5500", PX, A),
+                new SimplifiedRate("5510", PX, B)));
+        elementGenerator = ElementGeneratorBuilder.create(SimplifiedRate.class)
+                .withExistingElements(simplifiedRates)
+                .withSingleValueProperty("chargeCode", Arrays.asList("5500", "5510"), SimplifiedRate::getChargeCode)
+                .withSingleValueProperty("product", EnumSet.allOf(Product.class), SimplifiedRate::getProduct)
+                .withSingleValueProperty("zone", EnumSet.allOf(Zone.class), SimplifiedRate::getZone)
+                .withElementFactory(abstractElement -> {
+                    assertThat(abstractElement.isGenerated(), is(true));
+                    return new SimplifiedRate(
+                            abstractElement.get("chargeCode"),
+                            abstractElement.get("product"),
+                            abstractElement.get("zone"));
+                })
+                .buildIncremental();
+    }
+
+    @Test
+    public void shouldStartWithTheMissingElementsOfTheExistingElements() {
+        ElementGenerator<SimplifiedRate> fullGenerator = ElementGeneratorBuilder.create(SimplifiedRate.class)
+                .withExistingElements(simplifiedRates)
+                .withSingleValueProperty("chargeCode", Arrays.asList("5500", "5510"), SimplifiedRate::getChargeCode)
+                .withSingleValueProperty("product", EnumSet.allOf(Product.class), SimplifiedRate::getProduct)
+                .withSingleValueProperty("zone", EnumSet.allOf(Zone.class), SimplifiedRate::getZone)
+                .withElementFactory(abstractElement -> new SimplifiedRate(
+                        abstractElement.get("chargeCode"),
+                        abstractElement.get("product"),
+                        abstractElement.get("zone")))
+                .build();
+
+        assertThat(elementGenerator.streamMissingElements().collect(Collectors.toSet()),
+                is(fullGenerator.generateMissingElements()));
+    }
+
+    @Test
+    public void shouldReportOnlyTheChangedMissingElements() {
+        SimplifiedRate added = new SimplifiedRate("5500", TX, B);
+
+        MissingElementsDelta<SimplifiedRate> delta = elementGenerator.addExisting(added);
+        assertThat(delta.getNoLongerMissing(), contains(added));
+        assertThat(delta.getNewlyMissing(), empty());
+        assertThat(elementGenerator.streamMissingElements().collect(Collectors.toList()), not(hasItem(added)));
+        assertThat(elementGenerator.streamMissingElements().count(), is(9L));
+
+        delta = elementGenerator.removeExisting(new SimplifiedRate("5500", PX, A));
+        assertThat(delta.getNewlyMissing(), contains(new SimplifiedRate("5500", PX, A)));
+        assertThat(delta.getNoLongerMissing(), empty());
+        assertThat(elementGenerator.streamMissingElements().count(), is(10L));
+
+        // adding an element twice doesn't change anything
+        assertThat(elementGenerator.addExisting(added).isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldRejectRemovalOfUnknownElements() {
+        try {
+            elementGenerator.removeExisting(new SimplifiedRate("5500", TX, B));
+            fail("only existing elements can be removed");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), endsWith("is not an existing element"));
+        }
+        assertThat(elementGenerator.streamMissingElements().count(), is(10L));
+    }
+
+    @Test
+    public void shouldStreamMissingElementsOnceForRepeatedValues() {
+        IncrementalElementGenerator<List<String>> elementGenerator = ElementGeneratorBuilder.<List<String>>create()
+                .withExistingElements(Collections.singletonList(Arrays.asList("x", "1")))
+                .withSingleValueProperty("a", Arrays.asList("x", "y", "y"), element -> element.get(0))
+                .withSingleValueProperty("b", Arrays.asList("1", "2"), element -> element.get(1))
+                .withElementFactory(abstractElement -> Arrays.asList(abstractElement.get("a"), abstractElement.get("b")))
+                .buildIncremental();
+
+        assertThat(elementGenerator.streamMissingElements().count(), is(3L));
+    }
+
+    @Test
+    public void shouldNotCreateElementsForTheInitialExistingElements() {
+        AtomicInteger createdElements = new AtomicInteger();
+        IncrementalElementGenerator<List<String>> elementGenerator = ElementGeneratorBuilder.<List<String>>create()
+                .withExistingElements(Collections.singletonList(Arrays.asList("x", "1")))
+                .withSingleValueProperty("a", Collections.singletonList("x"), element -> element.get(0))
+                .withSingleValueProperty("b", Arrays.asList("1", "2"), element -> element.get(1))
+                .withElementFactory(abstractElement -> {
+                    createdElements.incrementAndGet();
+                    return Arrays.asList(abstractElement.get("a"), abstractElement.get("b"));
+                })
+                .buildIncremental();
+
+        assertThat(createdElements.get(), is(0));
+        assertThat(elementGenerator.streamMissingElements().collect(Collectors.toList()),
+                contains(Arrays.asList("x", "2")));
+    }
+
+    @Test
+    public void shouldPassTheChangedAbstractionAsMissingToTheFactory() {
+        IncrementalElementGenerator<SimplifiedRate> elementGenerator = ElementGeneratorBuilder.create(SimplifiedRate.class)
+                .withExistingElements(simplifiedRates)
+                .withSingleValueProperty("chargeCode", Arrays.asList("5500", "5510"), SimplifiedRate::getChargeCode)
+                .withSingleValueProperty("product", EnumSet.allOf(Product.class), SimplifiedRate::getProduct)
+                .withSingleValueProperty("zone", EnumSet.allOf(Zone.class), SimplifiedRate::getZone)
+                .withElementFactory((allGeneratedElements, abstractElement) -> {
+                    assertThat(allGeneratedElements.contains(abstractElement), is(true));
+                    return new SimplifiedRate(
+                            abstractElement.get("chargeCode"),
+                            abstractElement.get("product"),
+                            abstractElement.get("zone"));
+                })
+                .buildIncremental();
+
+        SimplifiedRate added = new SimplifiedRate("5500", TX, B);
+        assertThat(elementGenerator.addExisting(added).getNoLongerMissing(), contains(added));
+        assertThat(elementGenerator.removeExisting(added).getNewlyMissing(), contains(added));
+    }
+
+    @Test
+    public void shouldRejectConflictingElementsWithoutChangingTheMissingElements() {
+        // the charge code isn't a key property
+        IncrementalElementGenerator<SimplifiedRate> elementGenerator = ElementGeneratorBuilder.create(SimplifiedRate.class)
+                .withExistingElements(simplifiedRates)
+                .withSingleValueProperty("product", EnumSet.allOf(Product.class), SimplifiedRate::getProduct)
+                .withSingleValueProperty("zone", EnumSet.allOf(Zone.class), SimplifiedRate::getZone)
+                .withElementFactory(abstractElement -> new SimplifiedRate(
+                        "5500", abstractElement.get("product"), abstractElement.get("zone")))
+                .buildIncremental();
+        Set<SimplifiedRate> missingElements = elementGenerator.streamMissingElements().collect(Collectors.toSet());
+
+        SimplifiedRate conflicting = new SimplifiedRate("5520", PX, A);
+        try {
+            elementGenerator.addExisting(conflicting);
+            fail("conflicting existing elements must be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), startsWith("Error: Existing concrete elements were mapped to " +
+                    "abstract elements that have been constructed already ([<ElementAbstraction{"));
+        }
+        assertThat(elementGenerator.streamMissingElements().collect(Collectors.toSet()), is(missingElements));
+        try {
+            elementGenerator.removeExisting(conflicting);
+            fail("the conflicting element must not have been added");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), endsWith("is not an existing element"));
+        }
+    }
+}